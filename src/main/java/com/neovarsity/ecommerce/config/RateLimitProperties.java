@@ -0,0 +1,43 @@
+package com.neovarsity.ecommerce.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Component
+@Validated
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+    
+    private boolean enabled = true;
+    
+    private Duration sweepInterval = Duration.ofMinutes(1);
+    
+    @Valid
+    private List<Rule> rules = new ArrayList<>();
+    
+    @Data
+    public static class Rule {
+        
+        @NotBlank(message = "Rate limit pattern is required")
+        private String pattern;
+        
+        @Min(value = 1, message = "Rate limit capacity must be at least 1")
+        private int capacity;
+        
+        @NotNull(message = "Rate limit period is required")
+        @DurationMin(millis = 1, message = "Rate limit period must be positive")
+        private Duration period = Duration.ofMinutes(1);
+    }
+}
@@ -1,13 +1,26 @@
 package com.neovarsity.ecommerce.controller;
 
+import com.neovarsity.ecommerce.dto.ProductImportResponse;
+import com.neovarsity.ecommerce.dto.ProductResponse;
+import com.neovarsity.ecommerce.dto.TokenRevocationRequest;
+import com.neovarsity.ecommerce.dto.UserProvisionResponse;
+import com.neovarsity.ecommerce.dto.UserRegistrationRequest;
 import com.neovarsity.ecommerce.model.Order;
 import com.neovarsity.ecommerce.repository.OrderRepository;
+import com.neovarsity.ecommerce.service.AuthService;
+import com.neovarsity.ecommerce.service.ProductImportService;
+import com.neovarsity.ecommerce.service.ProductService;
+import com.neovarsity.ecommerce.service.UserProvisioningService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -18,14 +31,59 @@ public class AdminController {
     @Autowired
     private OrderRepository orderRepository;
     
+    @Autowired
+    private ProductImportService productImportService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private AuthService authService;
+    
+    @Autowired
+    private UserProvisioningService userProvisioningService;
+    
     @GetMapping("/orders")
     public ResponseEntity<List<Order>> getAllOrders() {
-        return ResponseEntity.ok(orderRepository.findAll());
+        return ResponseEntity.ok(orderRepository.findAllWithItems());
     }
     
     @GetMapping("/orders/status/{status}")
     public ResponseEntity<List<Order>> getOrdersByStatus(@PathVariable Order.OrderStatus status) {
-        return ResponseEntity.ok(orderRepository.findByStatus(status));
+        return ResponseEntity.ok(orderRepository.findWithItemsByStatus(status));
+    }
+    
+    @PostMapping("/users/bulk")
+    public ResponseEntity<UserProvisionResponse> provisionUsers(@RequestBody List<UserRegistrationRequest> requests) {
+        return ResponseEntity.ok(userProvisioningService.provision(requests));
+    }
+    
+    @PutMapping("/users/{userId}/enabled")
+    public ResponseEntity<Map<String, Object>> setUserEnabled(
+            @PathVariable Long userId,
+            @RequestParam boolean enabled) {
+        return ResponseEntity.ok(authService.setUserEnabled(userId, enabled));
+    }
+    
+    @PostMapping("/tokens/revoke")
+    public ResponseEntity<Map<String, Object>> revokeToken(@Valid @RequestBody TokenRevocationRequest request) {
+        return ResponseEntity.ok(authService.revokeToken(request.getToken()));
+    }
+    
+    @PostMapping(value = "/products/import", consumes = "text/csv")
+    public ResponseEntity<ProductImportResponse> importProductsCsv(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(productImportService.importCsv(request.getInputStream()));
+    }
+    
+    @PostMapping(value = "/products/import", consumes = "application/x-ndjson")
+    public ResponseEntity<ProductImportResponse> importProductsNdjson(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(productImportService.importNdjson(request.getInputStream()));
+    }
+    
+    @PutMapping("/products/{productId}/hot")
+    public ResponseEntity<ProductResponse> setProductHot(
+            @PathVariable Long productId,
+            @RequestParam boolean hot) {
+        return ResponseEntity.ok(productService.setHot(productId, hot));
     }
 }
-
@@ -1,6 +1,8 @@
 package com.neovarsity.ecommerce.controller;
 
+import com.neovarsity.ecommerce.dto.CartBatchRequest;
 import com.neovarsity.ecommerce.dto.CartItemRequest;
+import com.neovarsity.ecommerce.dto.CartSummary;
 import com.neovarsity.ecommerce.service.CartService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,11 +24,21 @@ public class CartController {
         return ResponseEntity.ok(cartService.addToCart(request));
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> applyBatch(@Valid @RequestBody CartBatchRequest request) {
+        return ResponseEntity.ok(cartService.applyBatch(request));
+    }
+    
     @GetMapping
     public ResponseEntity<Map<String, Object>> getCart() {
         return ResponseEntity.ok(cartService.getCart());
     }
     
+    @GetMapping("/summary")
+    public ResponseEntity<CartSummary> getCartSummary() {
+        return ResponseEntity.ok(cartService.getCartSummary());
+    }
+    
     @DeleteMapping("/item/{cartItemId}")
     public ResponseEntity<Map<String, Object>> removeFromCart(@PathVariable Long cartItemId) {
         return ResponseEntity.ok(cartService.removeFromCart(cartItemId));
@@ -1,42 +1,134 @@
 package com.neovarsity.ecommerce.controller;
 
+import com.neovarsity.ecommerce.dto.ProductFacetResponse;
+import com.neovarsity.ecommerce.dto.ProductPageResponse;
 import com.neovarsity.ecommerce.dto.ProductRequest;
 import com.neovarsity.ecommerce.dto.ProductResponse;
+import com.neovarsity.ecommerce.dto.ProductSuggestion;
 import com.neovarsity.ecommerce.service.ProductService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/products")
 @CrossOrigin(origins = "*")
 public class ProductController {
     
+    private static final Object EXPORT_TIMEOUT_KEY = new Object();
+    
     @Autowired
     private ProductService productService;
     
+    @Value("${product.export.timeout:30m}")
+    private Duration exportTimeout;
+    
     @GetMapping
-    public ResponseEntity<List<ProductResponse>> getAllProducts() {
-        return ResponseEntity.ok(productService.getAllProducts());
+    public ResponseEntity<ProductPageResponse> getAllProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "catalog", productService.getCatalogLastModified(),
+                productService.getCatalogStockVersion())) {
+            return null;
+        }
+        return ResponseEntity.ok(productService.getAllProducts(cursor, limit));
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id, WebRequest webRequest) {
+        if (isNotModified(webRequest, "product-" + id, productService.getProductLastModified(id),
+                productService.getProductStockVersion(id))) {
+            return null;
+        }
         return ResponseEntity.ok(productService.getProductById(id));
     }
     
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<ProductResponse>> getProductsByCategory(@PathVariable String category) {
-        return ResponseEntity.ok(productService.getProductsByCategory(category));
+    public ResponseEntity<ProductPageResponse> getProductsByCategory(
+            @PathVariable String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            WebRequest webRequest) {
+        if (isNotModified(webRequest, "catalog", productService.getCatalogLastModified(),
+                productService.getCatalogStockVersion())) {
+            return null;
+        }
+        return ResponseEntity.ok(productService.getProductsByCategory(category, cursor, limit));
     }
     
     @GetMapping("/search")
-    public ResponseEntity<List<ProductResponse>> searchProducts(@RequestParam String keyword) {
-        return ResponseEntity.ok(productService.searchProducts(keyword));
+    public ResponseEntity<List<ProductResponse>> searchProducts(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(productService.searchProducts(keyword, limit));
+    }
+    
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ProductSuggestion>> suggestProducts(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggestProducts(prefix, limit));
+    }
+    
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacetResponse> getFacets(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String priceBucket) {
+        return ResponseEntity.ok(productService.getFacets(category, brand, priceBucket));
+    }
+    
+    // Admin only (see SecurityConfig): each export holds a database cursor open until the
+    // last product is written. Only this response gets the long async timeout.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) {
+        WebAsyncUtils.getAsyncManager(webRequest).registerCallableInterceptor(EXPORT_TIMEOUT_KEY,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                        ((AsyncWebRequest) request).setTimeout(exportTimeout.toMillis());
+                    }
+                });
+        boolean gzip = acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024);
+                productService.exportActiveProducts(gzipOut);
+                gzipOut.finish();
+            } else {
+                productService.exportActiveProducts(out);
+            }
+        };
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
     
     @PostMapping
@@ -58,5 +150,44 @@ public class ProductController {
         productService.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
+    
+    // Honours q-values, so "gzip;q=0" is a refusal rather than an acceptance.
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    // Live hot stock has no modification date, so when it is part of the response only
+    // the ETag, which carries its version, is sent and checked.
+    private boolean isNotModified(WebRequest webRequest, String resource, Optional<LocalDateTime> lastModified,
+                                  Optional<String> stockVersion) {
+        if (lastModified.isEmpty()) {
+            return false;
+        }
+        Instant instant = lastModified.get().atZone(ZoneId.systemDefault()).toInstant();
+        String version = Long.toHexString(instant.getEpochSecond()) + "." + Integer.toHexString(instant.getNano());
+        if (stockVersion.isPresent()) {
+            return webRequest.checkNotModified("\"" + resource + "-" + version + "-" + stockVersion.get() + "\"");
+        }
+        return webRequest.checkNotModified("\"" + resource + "-" + version + "\"", instant.toEpochMilli());
+    }
 }
-
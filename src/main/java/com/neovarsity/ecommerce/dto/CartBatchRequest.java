@@ -0,0 +1,18 @@
+package com.neovarsity.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchRequest {
+    
+    @NotEmpty(message = "At least one operation is required")
+    private List<@Valid CartOperation> operations;
+}
@@ -0,0 +1,13 @@
+package com.neovarsity.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLineQuantity {
+    private Long productId;
+    private Integer quantity;
+}
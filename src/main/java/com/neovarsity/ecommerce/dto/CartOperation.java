@@ -0,0 +1,26 @@
+package com.neovarsity.ecommerce.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperation {
+    
+    @NotNull(message = "Operation type is required")
+    private Type type;
+    
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+    
+    @Min(value = 0, message = "Quantity cannot be negative")
+    private Integer quantity;
+    
+    public enum Type {
+        ADD, SET, REMOVE
+    }
+}
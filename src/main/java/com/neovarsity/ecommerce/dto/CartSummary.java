@@ -0,0 +1,15 @@
+package com.neovarsity.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummary {
+    private BigDecimal subtotal;
+    private Integer itemCount;
+}
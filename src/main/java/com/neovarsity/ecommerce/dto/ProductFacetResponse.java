@@ -0,0 +1,17 @@
+package com.neovarsity.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetResponse {
+    private long total;
+    private Map<String, Long> categories;
+    private Map<String, Long> brands;
+    private Map<String, Long> priceBuckets;
+}
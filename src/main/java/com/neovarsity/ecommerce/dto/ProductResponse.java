@@ -20,6 +20,7 @@ public class ProductResponse {
     private String brand;
     private String imageUrl;
     private Boolean active;
+    private Boolean hot;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
@@ -0,0 +1,17 @@
+package com.neovarsity.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StaleCartLine {
+    private Long id;
+    private Long cartId;
+    private Long userId;
+    private LocalDateTime addedAt;
+}
@@ -0,0 +1,15 @@
+package com.neovarsity.ecommerce.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenRevocationRequest {
+    
+    @NotBlank(message = "Token is required")
+    private String token;
+}
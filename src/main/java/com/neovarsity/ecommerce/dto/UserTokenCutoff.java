@@ -0,0 +1,15 @@
+package com.neovarsity.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserTokenCutoff {
+    private Long userId;
+    private LocalDateTime tokensRevokedBefore;
+}
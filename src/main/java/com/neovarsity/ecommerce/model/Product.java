@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 public class Product {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false)
@@ -43,6 +44,9 @@ public class Product {
     @Column(nullable = false)
     private Boolean active = true;
     
+    @Column(nullable = false)
+    private Boolean hot = false;
+    
     @Column(nullable = false)
     private LocalDateTime createdAt;
     
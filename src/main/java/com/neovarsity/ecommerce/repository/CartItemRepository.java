@@ -0,0 +1,59 @@
+package com.neovarsity.ecommerce.repository;
+
+import com.neovarsity.ecommerce.dto.CartLineQuantity;
+import com.neovarsity.ecommerce.dto.StaleCartLine;
+import com.neovarsity.ecommerce.model.CartItem;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    
+    @Modifying
+    @Query("UPDATE CartItem i SET i.quantity = i.quantity + :quantity "
+            + "WHERE i.cart.id = :cartId AND i.product.id = :productId")
+    int incrementQuantity(@Param("cartId") Long cartId,
+                          @Param("productId") Long productId,
+                          @Param("quantity") int quantity);
+    
+    long countByCartId(Long cartId);
+    
+    @Query("SELECT new com.neovarsity.ecommerce.dto.CartLineQuantity(i.product.id, i.quantity) "
+            + "FROM CartItem i WHERE i.cart.id = :cartId")
+    List<CartLineQuantity> findQuantitiesByCartId(@Param("cartId") Long cartId);
+    
+    Optional<CartItem> findByIdAndCartId(Long id, Long cartId);
+    
+    @Modifying
+    @Query("DELETE FROM CartItem i WHERE i.cart.id = :cartId")
+    int deleteAllByCartId(@Param("cartId") Long cartId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM CartItem i WHERE i.cart.id = :cartId AND i.product.id IN :productIds")
+    List<CartItem> findForUpdate(@Param("cartId") Long cartId, @Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT new com.neovarsity.ecommerce.dto.StaleCartLine(i.id, c.id, c.user.id, i.addedAt) "
+            + "FROM CartItem i JOIN i.cart c "
+            + "WHERE i.addedAt < :cutoff AND (c.updatedAt IS NULL OR c.updatedAt < :cutoff) "
+            + "AND (i.addedAt > :afterAddedAt OR (i.addedAt = :afterAddedAt AND i.id > :afterId)) "
+            + "ORDER BY i.addedAt, i.id")
+    List<StaleCartLine> findStaleLines(@Param("cutoff") LocalDateTime cutoff,
+                                       @Param("afterAddedAt") LocalDateTime afterAddedAt,
+                                       @Param("afterId") Long afterId,
+                                       Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM CartItem i WHERE i.id IN :ids AND i.cart.id IN :cartIds")
+    int deleteAllByIdInCarts(@Param("ids") Collection<Long> ids, @Param("cartIds") Collection<Long> cartIds);
+}
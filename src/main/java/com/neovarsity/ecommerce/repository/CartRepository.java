@@ -1,13 +1,61 @@
 package com.neovarsity.ecommerce.repository;
 
+import com.neovarsity.ecommerce.dto.CartSummary;
 import com.neovarsity.ecommerce.model.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserId(Long userId);
+    
+    @EntityGraph(attributePaths = {"user", "items", "items.product"})
+    @Query("SELECT c FROM Cart c WHERE c.user.id = :userId")
+    Optional<Cart> findWithItemsByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT c.id FROM Cart c WHERE c.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT new com.neovarsity.ecommerce.dto.CartSummary(c.subtotal, c.itemCount) FROM Cart c WHERE c.user.id = :userId")
+    Optional<CartSummary> findSummaryByUserId(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query("UPDATE Cart c SET c.updatedAt = :now WHERE c.id = :cartId")
+    int touch(@Param("cartId") Long cartId, @Param("now") LocalDateTime now);
+    
+    // The price is read by the statement itself, under the cart row lock the caller holds
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE carts SET subtotal = subtotal + :quantity * (SELECT p.price FROM products p WHERE p.id = :productId), "
+            + "item_count = item_count + :lines WHERE id = :cartId", nativeQuery = true)
+    int adjustTotals(@Param("cartId") Long cartId, @Param("productId") Long productId,
+                     @Param("quantity") int quantity, @Param("lines") int lines);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Cart c SET c.subtotal = 0, c.itemCount = 0 WHERE c.id = :cartId")
+    int resetTotals(@Param("cartId") Long cartId);
+    
+    @Query(value = "SELECT id FROM carts WHERE id IN (SELECT cart_id FROM cart_items WHERE product_id = :productId) "
+            + "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockContaining(@Param("productId") Long productId);
+    
+    @Query(value = "SELECT id FROM carts WHERE id IN (:ids) AND (updated_at IS NULL OR updated_at < :cutoff) "
+            + "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockInactive(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE carts SET "
+            + "subtotal = (SELECT COALESCE(SUM(ci.quantity * p.price), 0) "
+            + "FROM cart_items ci JOIN products p ON p.id = ci.product_id WHERE ci.cart_id = carts.id), "
+            + "item_count = (SELECT COUNT(*) FROM cart_items ci WHERE ci.cart_id = carts.id) "
+            + "WHERE id IN (:ids)", nativeQuery = true)
+    int recomputeTotals(@Param("ids") Collection<Long> ids);
 }
-
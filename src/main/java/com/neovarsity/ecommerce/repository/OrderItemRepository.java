@@ -0,0 +1,29 @@
+package com.neovarsity.ecommerce.repository;
+
+import com.neovarsity.ecommerce.model.OrderItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+    
+    @Query("SELECT DISTINCT i.product.id FROM OrderItem i WHERE i.stockApplied = false")
+    List<Long> findProductIdsWithUnappliedStock();
+    
+    @Query(value = "SELECT id FROM order_items WHERE product_id = :productId AND stock_applied = FALSE "
+            + "ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<Long> lockUnapplied(@Param("productId") Long productId, @Param("limit") int limit);
+    
+    @Query("SELECT COALESCE(SUM(i.quantity), 0) FROM OrderItem i WHERE i.id IN :ids")
+    long sumQuantities(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("UPDATE OrderItem i SET i.stockApplied = true WHERE i.id IN :ids")
+    int markStockApplied(@Param("ids") Collection<Long> ids);
+}
@@ -1,14 +1,33 @@
 package com.neovarsity.ecommerce.repository;
 
 import com.neovarsity.ecommerce.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
     List<Order> findByStatus(Order.OrderStatus status);
+    
+    @EntityGraph(attributePaths = {"user", "user.cart", "items", "items.product"})
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findWithItemsById(@Param("id") Long id);
+    
+    @EntityGraph(attributePaths = {"user", "user.cart", "items", "items.product"})
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findWithItemsByUserId(@Param("userId") Long userId);
+    
+    @EntityGraph(attributePaths = {"user", "user.cart", "items", "items.product"})
+    @Query("SELECT o FROM Order o WHERE o.status = :status ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findWithItemsByStatus(@Param("status") Order.OrderStatus status);
+    
+    @EntityGraph(attributePaths = {"user", "user.cart", "items", "items.product"})
+    @Query("SELECT o FROM Order o")
+    List<Order> findAllWithItems();
 }
-
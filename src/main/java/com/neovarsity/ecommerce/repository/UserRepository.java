@@ -1,14 +1,27 @@
 package com.neovarsity.ecommerce.repository;
 
+import com.neovarsity.ecommerce.dto.UserTokenCutoff;
 import com.neovarsity.ecommerce.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+    
+    @Query("SELECT new com.neovarsity.ecommerce.dto.UserTokenCutoff(u.id, u.tokensRevokedBefore) "
+            + "FROM User u WHERE u.tokensRevokedBefore > :since")
+    List<UserTokenCutoff> findTokenCutoffsAfter(@Param("since") LocalDateTime since);
+    
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 }
 
@@ -0,0 +1,27 @@
+package com.neovarsity.ecommerce.security;
+
+import com.neovarsity.ecommerce.model.User;
+import com.neovarsity.ecommerce.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CurrentUser {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    public Long getId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            throw new RuntimeException("User not authenticated");
+        }
+        return principal.getId();
+    }
+    
+    public User getReference() {
+        return userRepository.getReferenceById(getId());
+    }
+}
@@ -0,0 +1,139 @@
+package com.neovarsity.ecommerce.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovarsity.ecommerce.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    @Autowired
+    private RateLimitProperties properties;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private List<Limit> limits = List.of();
+    
+    @PostConstruct
+    void init() {
+        List<Limit> configured = new ArrayList<>();
+        for (RateLimitProperties.Rule rule : properties.getRules()) {
+            long interval = rule.getPeriod().toNanos() / rule.getCapacity();
+            Counter rejected = Counter.builder("rate.limit.rejected")
+                    .description("Requests rejected by the rate limiter")
+                    .tag("pattern", rule.getPattern())
+                    .register(meterRegistry);
+            configured.add(new Limit(configured.size(), rule.getPattern(), interval, interval * rule.getCapacity(), rejected));
+        }
+        limits = List.copyOf(configured);
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || limits.isEmpty();
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        
+        Limit limit = match(request.getServletPath());
+        if (limit != null) {
+            long waitNanos = acquire(limit.index + ":" + clientKey(request), limit);
+            if (waitNanos > 0) {
+                limit.rejected.increment();
+                reject(response, waitNanos);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+    
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval:PT1M}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(theoreticalArrival -> theoreticalArrival.get() - now <= 0);
+    }
+    
+    // Generic cell rate algorithm: each key holds only its theoretical arrival time,
+    // so admitting a request is a single compare-and-set with no per-bucket lock.
+    // A bucket whose arrival time has passed is full again and can be dropped.
+    private long acquire(String key, Limit limit) {
+        AtomicLong theoreticalArrival = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current - now, 0) + now + limit.interval;
+            long wait = next - now - limit.burst;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+    
+    private Limit match(String path) {
+        for (Limit limit : limits) {
+            if (pathMatcher.match(limit.pattern, path)) {
+                return limit;
+            }
+        }
+        return null;
+    }
+    
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return "user:" + principal.getId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+    
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", "error");
+        body.put("message", "Too many requests");
+        
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+    
+    private record Limit(int index, String pattern, long interval, long burst, Counter rejected) {
+    }
+}
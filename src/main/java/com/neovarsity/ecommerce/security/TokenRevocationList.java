@@ -0,0 +1,106 @@
+package com.neovarsity.ecommerce.security;
+
+import com.neovarsity.ecommerce.model.RevokedToken;
+import com.neovarsity.ecommerce.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+@Component
+public class TokenRevocationList {
+    
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+    
+    @Value("${token.revocation.expected-entries:100000}")
+    private long expectedEntries;
+    
+    @Value("${token.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private TransactionTemplate transactionTemplate;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuilding;
+    
+    public boolean isRevoked(String jti) {
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(jti)) {
+            return false;
+        }
+        return revokedTokenRepository.existsById(jti);
+    }
+    
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+    
+    // The jti is added again once the row commits: a refresh whose read missed the
+    // uncommitted row has by then published its filter, either as the one being rebuilt
+    // or as the current one.
+    @Transactional
+    public void revoke(String jti, Long userId, Date expiresAt) {
+        addToFilters(jti);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addToFilters(jti);
+                }
+            });
+        }
+        if (!revokedTokenRepository.existsById(jti)) {
+            LocalDateTime expiry = LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault());
+            revokedTokenRepository.save(new RevokedToken(jti, userId, expiry, null));
+        }
+    }
+    
+    // The new filter is published before anything is read, and the rows are read in a
+    // transaction of their own at READ COMMITTED, so a revoke either lands in the filter
+    // directly or is committed in time to be read.
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${token.revocation.refresh-interval:PT5M}",
+            fixedDelayString = "${token.revocation.refresh-interval:PT5M}")
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> revokedTokenRepository.deleteExpired(now));
+        
+        BloomFilter next = new BloomFilter(Math.max(expectedEntries, revokedTokenRepository.count() * 2),
+                falsePositiveRate);
+        rebuilding = next;
+        transactionTemplate.execute(status -> revokedTokenRepository.findUnexpiredJtis(now)).forEach(next::put);
+        filter = next;
+        rebuilding = null;
+    }
+    
+    // The filter being rebuilt is read first: once it is cleared, the current filter is
+    // already the rebuilt one.
+    private void addToFilters(String jti) {
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(jti);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(jti);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.neovarsity.ecommerce.security;
+
+import com.neovarsity.ecommerce.model.User;
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class UserPrincipal implements UserDetails {
+    
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+    public static final String ENABLED_CLAIM = "enabled";
+    
+    private final Long id;
+    private final String email;
+    private final String password;
+    private final User.Role role;
+    private final boolean enabled;
+    
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getEmail(), user.getPassword(), user.getRole(),
+                Boolean.TRUE.equals(user.getEnabled()));
+    }
+    
+    public static UserPrincipal from(Claims claims) {
+        Number id = claims.get(USER_ID_CLAIM, Number.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        Boolean enabled = claims.get(ENABLED_CLAIM, Boolean.class);
+        if (id == null || role == null || enabled == null || claims.getSubject() == null) {
+            return null;
+        }
+        try {
+            return new UserPrincipal(id.longValue(), claims.getSubject(), null, User.Role.valueOf(role), enabled);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+    
+    @Override
+    public String getUsername() {
+        return email;
+    }
+    
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+    
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package com.neovarsity.ecommerce.security;
+
+import com.neovarsity.ecommerce.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class UserRevocationRegistry {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Value("${jwt.expiration}")
+    private long jwtExpiration;
+    
+    private final Map<Long, Instant> revokedBefore = new ConcurrentHashMap<>();
+    
+    // Cutoffs are persisted on the user row, so each instance picks up disables made on
+    // the others. Reloaded cutoffs are merged rather than swapped in, so a disable made
+    // here while the read ran is not lost. A cutoff older than the token lifetime no
+    // longer matches any live token and is dropped.
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${user.revocation.refresh-interval:PT30S}",
+            fixedDelayString = "${user.revocation.refresh-interval:PT30S}")
+    public void refresh() {
+        Instant horizon = Instant.now().minusMillis(jwtExpiration);
+        userRepository.findTokenCutoffsAfter(LocalDateTime.ofInstant(horizon, ZoneId.systemDefault()))
+                .forEach(cutoff -> revokeTokensIssuedUntil(cutoff.getUserId(),
+                        cutoff.getTokensRevokedBefore().atZone(ZoneId.systemDefault()).toInstant()));
+        revokedBefore.values().removeIf(cutoff -> cutoff.isBefore(horizon));
+    }
+    
+    // Token iat claims have whole-second precision, so the cutoff is truncated to match
+    // and a token issued in the same second as the cutoff is revoked with the rest.
+    public Instant revokeTokensIssuedUntil(Long userId, Instant cutoff) {
+        return revokedBefore.merge(userId, cutoff.truncatedTo(ChronoUnit.SECONDS),
+                (current, next) -> next.isAfter(current) ? next : current);
+    }
+    
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        Instant cutoff = revokedBefore.get(userId);
+        return cutoff != null && (issuedAt == null || !issuedAt.toInstant().isAfter(cutoff));
+    }
+}
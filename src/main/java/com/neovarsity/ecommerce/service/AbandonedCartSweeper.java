@@ -0,0 +1,128 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.StaleCartLine;
+import com.neovarsity.ecommerce.repository.CartItemRepository;
+import com.neovarsity.ecommerce.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+public class AbandonedCartSweeper {
+    
+    private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private CartWriteBehindStore cartStore;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${cart.sweeper.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${cart.sweeper.max-age:30d}")
+    private Duration maxAge;
+    
+    @Value("${cart.sweeper.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${cart.sweeper.max-chunks-per-run:20}")
+    private int maxChunksPerRun;
+    
+    private TransactionTemplate transactionTemplate;
+    private LocalDateTime afterAddedAt = START;
+    private Long afterId = 0L;
+    private Counter deleted;
+    private Timer chunkTimer;
+    
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        deleted = Counter.builder("cart.sweeper.deleted")
+                .description("Stale cart lines deleted by the sweeper")
+                .register(meterRegistry);
+        chunkTimer = Timer.builder("cart.sweeper.chunk")
+                .description("Time to purge one chunk of stale cart lines")
+                .register(meterRegistry);
+    }
+    
+    // Deletes lines older than max-age from carts that have not changed for as long. Each
+    // chunk is its own short transaction, so cart row locks are held only briefly. Lines
+    // in carts still in use are stepped over by the keyset cursor instead of being
+    // rescanned by every chunk. A run stops after max-chunks-per-run chunks so it cannot
+    // hold a scheduler thread for long; the next run resumes from the cursor, and the
+    // cursor starts over once a run reaches the end.
+    @Scheduled(initialDelayString = "${cart.sweeper.interval:PT1H}",
+            fixedDelayString = "${cart.sweeper.interval:PT1H}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        for (int chunks = 0; chunks < maxChunksPerRun; chunks++) {
+            List<StaleCartLine> chunk = cartItemRepository.findStaleLines(cutoff, afterAddedAt, afterId,
+                    PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                restart();
+                return;
+            }
+            deleted.increment(chunkTimer.record(() -> purge(chunk, cutoff)));
+            
+            StaleCartLine last = chunk.get(chunk.size() - 1);
+            afterAddedAt = last.getAddedAt();
+            afterId = last.getId();
+            if (chunk.size() < chunkSize) {
+                restart();
+                return;
+            }
+        }
+    }
+    
+    private void restart() {
+        afterAddedAt = START;
+        afterId = 0L;
+    }
+    
+    // The carts are locked and re-checked before deleting, so a cart that changed after
+    // the chunk was read keeps its lines. Buffered copies of these carts are written out
+    // and dropped first, so they cannot later restore deleted lines.
+    private int purge(List<StaleCartLine> chunk, LocalDateTime cutoff) {
+        Set<Long> userIds = chunk.stream().map(StaleCartLine::getUserId).collect(Collectors.toSet());
+        Set<Long> cartIds = chunk.stream().map(StaleCartLine::getCartId).collect(Collectors.toSet());
+        List<Long> lineIds = chunk.stream().map(StaleCartLine::getId).collect(Collectors.toList());
+        
+        return cartStore.writeThrough(userIds, () -> transactionTemplate.execute(status -> {
+            List<Long> inactive = cartRepository.lockInactive(cartIds, cutoff);
+            if (inactive.isEmpty()) {
+                return 0;
+            }
+            int count = cartItemRepository.deleteAllByIdInCarts(lineIds, inactive);
+            cartRepository.recomputeTotals(inactive);
+            return count;
+        }));
+    }
+}
@@ -7,14 +7,24 @@ import com.neovarsity.ecommerce.dto.UserRegistrationRequest;
 import com.neovarsity.ecommerce.model.Cart;
 import com.neovarsity.ecommerce.model.User;
 import com.neovarsity.ecommerce.repository.UserRepository;
+import com.neovarsity.ecommerce.security.TokenRevocationList;
+import com.neovarsity.ecommerce.security.UserPrincipal;
+import com.neovarsity.ecommerce.security.UserRevocationRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 public class AuthService {
     
@@ -31,9 +41,11 @@ public class AuthService {
     private AuthenticationManager authenticationManager;
     
     @Autowired
-    private CustomUserDetailsService userDetailsService;
+    private UserRevocationRegistry revocationRegistry;
+    
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
     
-    @Transactional
     public AuthResponse register(UserRegistrationRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new RuntimeException("Email already exists");
@@ -48,31 +60,55 @@ public class AuthService {
         user.setRole(User.Role.CUSTOMER);
         user.setEnabled(true);
         
-        user = userRepository.save(user);
-        
         Cart cart = new Cart();
         cart.setUser(user);
         user.setCart(cart);
-        userRepository.save(user);
+        user = userRepository.save(user);
         
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getEmail());
-        String token = jwtUtil.generateToken(userDetails);
+        String token = jwtUtil.generateToken(UserPrincipal.from(user));
         
         return new AuthResponse(token, user.getEmail(), user.getRole().name(), "Registration successful");
     }
     
     public AuthResponse login(AuthRequest request) {
-        authenticationManager.authenticate(
+        Authentication authentication = authenticationManager.authenticate(
             new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
         );
         
-        UserDetails userDetails = userDetailsService.loadUserByUsername(request.getEmail());
-        String token = jwtUtil.generateToken(userDetails);
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        String token = jwtUtil.generateToken(principal);
         
-        User user = userRepository.findByEmail(request.getEmail())
+        return new AuthResponse(token, principal.getEmail(), principal.getRole().name(), "Login successful");
+    }
+    
+    public Map<String, Object> revokeToken(String token) {
+        Claims claims = token == null ? null : jwtUtil.verifyToken(token);
+        if (claims == null || claims.getId() == null) {
+            throw new RuntimeException("Invalid token");
+        }
+        tokenRevocationList.revoke(claims.getId(), claims.get(UserPrincipal.USER_ID_CLAIM, Long.class),
+                claims.getExpiration());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Token revoked successfully");
+        return response;
+    }
+    
+    @Transactional
+    public Map<String, Object> setUserEnabled(Long userId, boolean enabled) {
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        user.setEnabled(enabled);
+        if (!enabled) {
+            Instant cutoff = revocationRegistry.revokeTokensIssuedUntil(user.getId(), Instant.now());
+            user.setTokensRevokedBefore(LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault()));
+        }
+        userRepository.save(user);
         
-        return new AuthResponse(token, user.getEmail(), user.getRole().name(), "Login successful");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", enabled ? "User enabled successfully" : "User disabled successfully");
+        response.put("userId", user.getId());
+        return response;
     }
 }
 
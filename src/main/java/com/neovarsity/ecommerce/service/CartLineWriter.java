@@ -0,0 +1,63 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.model.Cart;
+import com.neovarsity.ecommerce.model.CartItem;
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.repository.CartItemRepository;
+import com.neovarsity.ecommerce.repository.CartRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class CartLineWriter {
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    
+    // Sets each product's line to its target quantity (zero removes the line) and moves
+    // the running totals by the difference, priced in SQL at the products' current price.
+    // The caller holds the cart row lock and passes the existing lines for these products,
+    // locked with findForUpdate.
+    public void write(Long cartId, Map<Long, Integer> quantities, Map<Long, Product> products,
+                      Map<Long, CartItem> lines) {
+        Cart cart = cartRepository.getReferenceById(cartId);
+        Map<Long, LineDelta> deltas = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            int quantity = entry.getValue();
+            CartItem line = lines.get(entry.getKey());
+            int previous = line == null ? 0 : line.getQuantity();
+            int lineDelta = 0;
+            
+            if (quantity == 0) {
+                if (line != null) {
+                    cartItemRepository.delete(line);
+                    lineDelta = -1;
+                }
+            } else if (line == null) {
+                CartItem cartItem = new CartItem();
+                cartItem.setCart(cart);
+                cartItem.setProduct(product);
+                cartItem.setQuantity(quantity);
+                cartItemRepository.save(cartItem);
+                lineDelta = 1;
+            } else {
+                line.setQuantity(quantity);
+            }
+            if (quantity != previous) {
+                deltas.put(product.getId(), new LineDelta(quantity - previous, lineDelta));
+            }
+        }
+        cartItemRepository.flush();
+        deltas.forEach((productId, delta) -> cartRepository.adjustTotals(cartId, productId, delta.quantity(), delta.lines()));
+    }
+    
+    private record LineDelta(int quantity, int lines) {
+    }
+}
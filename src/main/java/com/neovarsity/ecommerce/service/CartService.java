@@ -1,52 +1,140 @@
 package com.neovarsity.ecommerce.service;
 
+import com.neovarsity.ecommerce.dto.CartBatchRequest;
 import com.neovarsity.ecommerce.dto.CartItemRequest;
+import com.neovarsity.ecommerce.dto.CartOperation;
+import com.neovarsity.ecommerce.dto.CartSummary;
 import com.neovarsity.ecommerce.model.Cart;
 import com.neovarsity.ecommerce.model.CartItem;
 import com.neovarsity.ecommerce.model.Product;
 import com.neovarsity.ecommerce.model.User;
+import com.neovarsity.ecommerce.repository.CartItemRepository;
 import com.neovarsity.ecommerce.repository.CartRepository;
 import com.neovarsity.ecommerce.repository.ProductRepository;
-import com.neovarsity.ecommerce.repository.UserRepository;
+import com.neovarsity.ecommerce.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 public class CartService {
     
+    private static final int MAX_UPSERT_ATTEMPTS = 3;
+    
     @Autowired
     private CartRepository cartRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private CurrentUser currentUser;
     
     @Autowired
     private ProductRepository productRepository;
     
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-    }
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    
+    @Autowired
+    private CartLineWriter cartLineWriter;
+    
+    @Autowired
+    private CartWriteBehindStore cartStore;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${cart.batch.max-operations:100}")
+    private int maxBatchOperations;
     
-    @Transactional
     public Map<String, Object> addToCart(CartItemRequest request) {
-        User user = getCurrentUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setUser(user);
-                    return cartRepository.save(newCart);
-                });
+        Long userId = currentUser.getId();
+        if (cartStore.isEnabled()) {
+            Map<String, Object> buffered = bufferAdd(userId, request);
+            if (buffered != null) {
+                return buffered;
+            }
+        }
+        return cartStore.writeThrough(userId, () -> withUpsertRetry(() -> addToCart(userId, request)));
+    }
+    
+    public Map<String, Object> applyBatch(CartBatchRequest request) {
+        if (request.getOperations().size() > maxBatchOperations) {
+            throw new RuntimeException("At most " + maxBatchOperations + " operations are allowed per batch");
+        }
+        Long userId = currentUser.getId();
+        if (cartStore.isEnabled()) {
+            Map<String, Object> buffered = bufferBatch(userId, request.getOperations());
+            if (buffered != null) {
+                return buffered;
+            }
+        }
+        return cartStore.writeThrough(userId, () -> withUpsertRetry(() -> applyBatch(userId, request.getOperations())));
+    }
+    
+    private Map<String, Object> bufferAdd(Long userId, CartItemRequest request) {
+        Product product = productRepository.findById(request.getProductId())
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        
+        if (product.getStockQuantity() < request.getQuantity()) {
+            throw new RuntimeException("Insufficient stock");
+        }
+        
+        Map<Long, Integer> quantities = cartStore.apply(userId, current -> {
+            Map<Long, Integer> next = new HashMap<>(current);
+            next.merge(product.getId(), request.getQuantity(), Integer::sum);
+            return next;
+        });
+        if (quantities == null) {
+            return null;
+        }
         
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Item added to cart successfully");
+        response.put("cartItems", quantities.size());
+        return response;
+    }
+    
+    private Map<String, Object> bufferBatch(Long userId, List<CartOperation> operations) {
+        Map<Long, Product> products = findProducts(operations);
+        Map<Long, Integer> quantities = cartStore.apply(userId, current -> {
+            Map<Long, Integer> next = new HashMap<>(current);
+            next.putAll(resolveQuantities(operations, products, current));
+            return next;
+        });
+        if (quantities == null) {
+            return null;
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Cart updated successfully");
+        response.put("operations", operations.size());
+        response.put("cartItems", quantities.size());
+        return response;
+    }
+    
+    // The unique (cart_id, product_id) key makes this an upsert: increment the line in
+    // place, and only insert when no row was touched. Writers of the same cart queue on
+    // the cart row lock, but on MySQL the update that misses still takes a gap lock on
+    // that key, and a first add to a neighbouring cart can deadlock against it. A cart
+    // created by a concurrent request fails its unique key instead. Either way the
+    // caller rolls back and retries.
+    private Map<String, Object> addToCart(Long userId, CartItemRequest request) {
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         
@@ -54,72 +142,201 @@ public class CartService {
             throw new RuntimeException("Insufficient stock");
         }
         
-        CartItem existingItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(request.getProductId()))
-                .findFirst()
-                .orElse(null);
+        Long cartId = lockCart(userId);
         
-        if (existingItem != null) {
-            existingItem.setQuantity(existingItem.getQuantity() + request.getQuantity());
-        } else {
+        int addedLines = 0;
+        if (cartItemRepository.incrementQuantity(cartId, product.getId(), request.getQuantity()) == 0) {
             CartItem cartItem = new CartItem();
-            cartItem.setCart(cart);
+            cartItem.setCart(cartRepository.getReferenceById(cartId));
             cartItem.setProduct(product);
             cartItem.setQuantity(request.getQuantity());
-            cart.getItems().add(cartItem);
+            cartItemRepository.saveAndFlush(cartItem);
+            addedLines = 1;
         }
-        
-        cartRepository.save(cart);
+        cartRepository.adjustTotals(cartId, product.getId(), request.getQuantity(), addedLines);
         
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Item added to cart successfully");
-        response.put("cartItems", cart.getItems().size());
+        response.put("cartItems", cartItemRepository.countByCartId(cartId));
+        return response;
+    }
+    
+    // Lines touched by the batch are locked up front so a concurrent add cannot
+    // interleave between reading the current quantity and writing the new one.
+    private Map<String, Object> applyBatch(Long userId, List<CartOperation> operations) {
+        Map<Long, Product> products = findProducts(operations);
+        
+        Long cartId = lockCart(userId);
+        Map<Long, CartItem> lines = cartItemRepository.findForUpdate(cartId, products.keySet()).stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), Function.identity()));
+        
+        Map<Long, Integer> current = new HashMap<>();
+        lines.forEach((productId, item) -> current.put(productId, item.getQuantity()));
+        cartLineWriter.write(cartId, resolveQuantities(operations, products, current), products, lines);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Cart updated successfully");
+        response.put("operations", operations.size());
+        response.put("cartItems", cartItemRepository.countByCartId(cartId));
         return response;
     }
     
+    private Map<Long, Product> findProducts(List<CartOperation> operations) {
+        Set<Long> productIds = operations.stream()
+                .map(CartOperation::getProductId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+    
+    // Replays the operations over the current line quantities and checks stock against
+    // each final quantity. Returns the final quantity of every product the batch touches.
+    private Map<Long, Integer> resolveQuantities(List<CartOperation> operations, Map<Long, Product> products,
+                                                 Map<Long, Integer> current) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperation operation = operations.get(i);
+            Long productId = operation.getProductId();
+            if (!products.containsKey(productId)) {
+                errors.add("Operation " + (i + 1) + ": product " + productId + " not found");
+                continue;
+            }
+            
+            int existing = quantities.getOrDefault(productId, current.getOrDefault(productId, 0));
+            Integer quantity = operation.getQuantity();
+            switch (operation.getType()) {
+                case ADD -> {
+                    if (quantity == null || quantity < 1) {
+                        errors.add("Operation " + (i + 1) + ": quantity must be at least 1");
+                    } else {
+                        quantities.put(productId, existing + quantity);
+                    }
+                }
+                case SET -> {
+                    if (quantity == null) {
+                        errors.add("Operation " + (i + 1) + ": quantity is required");
+                    } else {
+                        quantities.put(productId, quantity);
+                    }
+                }
+                case REMOVE -> quantities.put(productId, 0);
+            }
+        }
+        
+        quantities.forEach((productId, quantity) -> {
+            if (quantity > products.get(productId).getStockQuantity()) {
+                errors.add("Insufficient stock for product " + productId);
+            }
+        });
+        if (!errors.isEmpty()) {
+            throw new RuntimeException(String.join("; ", errors));
+        }
+        return quantities;
+    }
+    
+    // Every cart mutation first takes the cart row lock, so the running subtotal and
+    // line count are adjusted by one writer at a time and never drift from the lines.
+    private Long lockCart(Long userId) {
+        Long cartId = cartRepository.findIdByUserId(userId)
+                .orElseGet(() -> {
+                    Cart newCart = new Cart();
+                    newCart.setUser(currentUser.getReference());
+                    return cartRepository.saveAndFlush(newCart).getId();
+                });
+        cartRepository.touch(cartId, LocalDateTime.now());
+        return cartId;
+    }
+    
+    private <T> T withUpsertRetry(Supplier<T> work) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (DataIntegrityViolationException | PessimisticLockingFailureException e) {
+                if (attempt >= MAX_UPSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
     public Map<String, Object> getCart() {
-        User user = getCurrentUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
+        User user = currentUser.getReference();
+        return cartStore.readThrough(user.getId(), () -> getCart(user));
+    }
+    
+    private Map<String, Object> getCart(User user) {
+        Cart cart = cartRepository.findWithItemsByUserId(user.getId())
                 .orElseGet(() -> {
                     Cart newCart = new Cart();
                     newCart.setUser(user);
                     return cartRepository.save(newCart);
                 });
         
-        BigDecimal total = cart.getItems().stream()
-                .map(item -> item.getProduct().getPrice()
-                        .multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
         Map<String, Object> response = new HashMap<>();
         response.put("items", cart.getItems());
-        response.put("totalAmount", total);
-        response.put("itemCount", cart.getItems().size());
+        response.put("totalAmount", cart.getSubtotal());
+        response.put("itemCount", cart.getItemCount());
         return response;
     }
     
-    @Transactional
+    public CartSummary getCartSummary() {
+        Long userId = currentUser.getId();
+        return cartStore.read(userId, this::summarize, () -> cartRepository.findSummaryByUserId(userId)
+                .orElseGet(() -> new CartSummary(BigDecimal.ZERO, 0)));
+    }
+    
+    // Totals of buffered quantities at current prices, as the next flush will write them
+    private CartSummary summarize(Map<Long, Integer> quantities) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        int lines = 0;
+        for (Product product : productRepository.findAllById(quantities.keySet())) {
+            subtotal = subtotal.add(product.getPrice().multiply(BigDecimal.valueOf(quantities.get(product.getId()))));
+            lines++;
+        }
+        return new CartSummary(subtotal, lines);
+    }
+    
     public Map<String, Object> removeFromCart(Long cartItemId) {
-        User user = getCurrentUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
+        Long userId = currentUser.getId();
+        return cartStore.writeThrough(userId, () -> new TransactionTemplate(transactionManager)
+                .execute(status -> removeFromCart(userId, cartItemId)));
+    }
+    
+    private Map<String, Object> removeFromCart(Long userId, Long cartItemId) {
+        Long cartId = cartRepository.findIdByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
+        cartRepository.touch(cartId, LocalDateTime.now());
         
-        cart.getItems().removeIf(item -> item.getId().equals(cartItemId));
-        cartRepository.save(cart);
+        cartItemRepository.findByIdAndCartId(cartItemId, cartId).ifPresent(item -> {
+            cartItemRepository.delete(item);
+            cartRepository.adjustTotals(cartId, item.getProduct().getId(), -item.getQuantity(), -1);
+        });
         
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Item removed from cart successfully");
         return response;
     }
     
-    @Transactional
     public Map<String, Object> clearCart() {
-        User user = getCurrentUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
+        Long userId = currentUser.getId();
+        if (cartStore.isEnabled() && cartStore.apply(userId, current -> Map.of()) != null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Cart cleared successfully");
+            return response;
+        }
+        return cartStore.writeThrough(userId, () -> new TransactionTemplate(transactionManager)
+                .execute(status -> clearCart(userId)));
+    }
+    
+    private Map<String, Object> clearCart(Long userId) {
+        Long cartId = cartRepository.findIdByUserId(userId)
                 .orElseThrow(() -> new RuntimeException("Cart not found"));
+        cartRepository.touch(cartId, LocalDateTime.now());
         
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        cartItemRepository.deleteAllByCartId(cartId);
+        cartRepository.resetTotals(cartId);
         
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Cart cleared successfully");
@@ -0,0 +1,428 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.CartLineQuantity;
+import com.neovarsity.ecommerce.model.Cart;
+import com.neovarsity.ecommerce.model.CartItem;
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.repository.CartItemRepository;
+import com.neovarsity.ecommerce.repository.CartRepository;
+import com.neovarsity.ecommerce.repository.ProductRepository;
+import com.neovarsity.ecommerce.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+@Component
+public class CartWriteBehindStore {
+    
+    private static final int LOCK_STRIPES = 256;
+    
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private CartLineWriter cartLineWriter;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${cart.store.mode:database}")
+    private String mode;
+    
+    @Value("${cart.store.max-carts:10000}")
+    private int maxCarts;
+    
+    @Value("${cart.store.flush-batch-size:100}")
+    private int flushBatchSize;
+    
+    private final Map<Long, BufferedCart> carts = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private boolean enabled;
+    private TransactionTemplate transactionTemplate;
+    private Timer flushTimer;
+    private Counter flushFailures;
+    
+    @PostConstruct
+    void init() {
+        if (!"database".equals(mode) && !"write-behind".equals(mode)) {
+            throw new IllegalStateException("Unknown cart.store.mode: " + mode);
+        }
+        enabled = "write-behind".equals(mode);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flushTimer = Timer.builder("cart.store.flush")
+                .description("Time to write buffered cart changes to the database")
+                .register(meterRegistry);
+        flushFailures = Counter.builder("cart.store.flush.failures")
+                .description("Buffered carts that could not be written and stay pending")
+                .register(meterRegistry);
+        Gauge.builder("cart.store.buffered", carts, Map::size)
+                .description("Carts held in memory")
+                .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // Applies a change to the user's buffered cart and returns the new product quantities.
+    // The change sees the cart as of its last change, loaded from the database on first use,
+    // and may throw to reject it. Returns null when the store is full of unflushed carts;
+    // the caller then writes through to the database instead.
+    public Map<Long, Integer> apply(Long userId, UnaryOperator<Map<Long, Integer>> change) {
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            BufferedCart cart = carts.get(userId);
+            if (cart == null) {
+                if (!makeRoom()) {
+                    return null;
+                }
+                cart = load(userId);
+                carts.put(userId, cart);
+            }
+            Map<Long, Integer> next = new HashMap<>(change.apply(Collections.unmodifiableMap(cart.quantities)));
+            next.values().removeIf(quantity -> quantity == 0);
+            cart.quantities = next;
+            cart.version++;
+            cart.dirty = true;
+            return Collections.unmodifiableMap(next);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Answers a read from the buffered quantities while the user's cart has changes not
+    // yet written, and from the database otherwise, so frequent reads such as the cart
+    // badge never force a flush.
+    public <T> T read(Long userId, Function<Map<Long, Integer>, T> fromBuffer, Supplier<T> fromDatabase) {
+        if (!enabled) {
+            return fromDatabase.get();
+        }
+        Map<Long, Integer> pending = null;
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            BufferedCart cart = carts.get(userId);
+            if (cart != null && cart.dirty) {
+                pending = cart.quantities;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return pending != null ? fromBuffer.apply(Collections.unmodifiableMap(pending)) : fromDatabase.get();
+    }
+    
+    // Runs work that reads the user's cart from the database, after writing out any
+    // pending changes, for reads that need what only the database has, such as line ids.
+    // The user's cart cannot change while the work runs.
+    public <T> T readThrough(Long userId, Supplier<T> work) {
+        return withCart(userId, false, work);
+    }
+    
+    // Runs work that changes the user's cart in the database, after writing out any pending
+    // changes. The buffered copy is dropped, so the next change reloads what the work left.
+    public <T> T writeThrough(Long userId, Supplier<T> work) {
+        return withCart(userId, true, work);
+    }
+    
+    // writeThrough for several users' carts at once, such as a background job
+    public <T> T writeThrough(Collection<Long> userIds, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        int[] stripes = lockStripes(userIds);
+        try {
+            for (Long userId : userIds) {
+                BufferedCart cart = carts.get(userId);
+                if (cart != null) {
+                    if (cart.dirty) {
+                        flush(cart);
+                    }
+                    carts.remove(userId);
+                }
+            }
+            return work.get();
+        } finally {
+            unlockStripes(stripes);
+        }
+    }
+    
+    // Pending carts are written in batches of flush-batch-size, one transaction per batch.
+    // If a batch fails, its carts are retried one at a time so one bad cart cannot hold
+    // back the others; carts that still fail stay pending for the next run.
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval:PT1S}")
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> pending = carts.entrySet().stream()
+                .filter(entry -> entry.getValue().dirty)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        
+        RuntimeException failure = null;
+        for (int from = 0; from < pending.size(); from += flushBatchSize) {
+            try {
+                flushBatch(pending.subList(from, Math.min(from + flushBatchSize, pending.size())));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    // Each cart's pending changes are snapshotted under its stripe and then written with
+    // no stripe held, so the users in the batch can keep changing their carts meanwhile.
+    // A cart's flush lock keeps its writes in snapshot order; a cart whose flush is still
+    // running elsewhere is left for the next run. A cart is clean again only if nothing
+    // changed after its snapshot.
+    private void flushBatch(List<Long> userIds) {
+        List<PendingFlush> batch = new ArrayList<>();
+        int[] stripes = lockStripes(userIds);
+        try {
+            for (Long userId : userIds) {
+                BufferedCart cart = carts.get(userId);
+                if (cart != null && cart.dirty && cart.flushLock.tryLock()) {
+                    batch.add(new PendingFlush(userId, cart, cart.snapshot()));
+                }
+            }
+        } finally {
+            unlockStripes(stripes);
+        }
+        
+        List<PendingFlush> written = new ArrayList<>();
+        RuntimeException failure = null;
+        try {
+            try {
+                flushTimer.record(() -> transactionTemplate.executeWithoutResult(
+                        status -> batch.forEach(pending -> write(pending.cart.cartId, pending.snapshot.changes))));
+                written.addAll(batch);
+            } catch (RuntimeException e) {
+                for (PendingFlush pending : batch) {
+                    try {
+                        flushTimer.record(() -> transactionTemplate.executeWithoutResult(
+                                status -> write(pending.cart.cartId, pending.snapshot.changes)));
+                        written.add(pending);
+                    } catch (RuntimeException retryFailure) {
+                        flushFailures.increment();
+                        failure = retryFailure;
+                    }
+                }
+            }
+        } finally {
+            batch.forEach(pending -> pending.cart.flushLock.unlock());
+        }
+        
+        stripes = lockStripes(written.stream().map(PendingFlush::userId).collect(Collectors.toList()));
+        try {
+            written.forEach(pending -> pending.cart.markFlushed(pending.snapshot));
+        } finally {
+            unlockStripes(stripes);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private <T> T withCart(Long userId, boolean evict, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        ReentrantLock lock = lockFor(userId);
+        lock.lock();
+        try {
+            BufferedCart cart = carts.get(userId);
+            if (cart != null) {
+                if (cart.dirty) {
+                    flush(cart);
+                }
+                if (evict) {
+                    carts.remove(userId);
+                }
+            }
+            return work.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // The caller holds the cart's stripe, so the snapshot is the cart's latest state. A
+    // background flush of the same cart is waited for, as it may otherwise commit later.
+    private void flush(BufferedCart cart) {
+        cart.flushLock.lock();
+        try {
+            Snapshot snapshot = cart.snapshot();
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> write(cart.cartId, snapshot.changes)));
+            cart.markFlushed(snapshot);
+        } finally {
+            cart.flushLock.unlock();
+        }
+    }
+    
+    // Writes the lines whose quantity differs from what was last flushed. The cart row lock
+    // orders this against any other writer of the same cart, as in CartService.
+    private void write(Long cartId, Map<Long, Integer> changes) {
+        cartRepository.touch(cartId, LocalDateTime.now());
+        Map<Long, Product> products = productRepository.findAllById(changes.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        changes.keySet().retainAll(products.keySet());
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Long, CartItem> lines = cartItemRepository.findForUpdate(cartId, changes.keySet()).stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), Function.identity()));
+        cartLineWriter.write(cartId, changes, products, lines);
+    }
+    
+    private BufferedCart load(Long userId) {
+        return transactionTemplate.execute(status -> {
+            Long cartId = cartRepository.findIdByUserId(userId)
+                    .orElseGet(() -> {
+                        Cart newCart = new Cart();
+                        newCart.setUser(userRepository.getReferenceById(userId));
+                        return cartRepository.saveAndFlush(newCart).getId();
+                    });
+            Map<Long, Integer> quantities = cartItemRepository.findQuantitiesByCartId(cartId).stream()
+                    .collect(Collectors.toMap(CartLineQuantity::getProductId, CartLineQuantity::getQuantity));
+            return new BufferedCart(cartId, quantities);
+        });
+    }
+    
+    // Evicts carts with nothing pending until there is room for one more. Carts whose
+    // stripe is busy are skipped rather than waited for.
+    private boolean makeRoom() {
+        if (carts.size() < maxCarts) {
+            return true;
+        }
+        for (Long userId : carts.keySet()) {
+            ReentrantLock lock = lockFor(userId);
+            if (lock.tryLock()) {
+                try {
+                    BufferedCart cart = carts.get(userId);
+                    if (cart != null && !cart.dirty) {
+                        carts.remove(userId);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (carts.size() < maxCarts) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Stripes are always taken in ascending order, so two callers locking several carts
+    // cannot deadlock each other
+    private int[] lockStripes(Collection<Long> userIds) {
+        int[] stripes = userIds.stream().mapToInt(this::stripe).distinct().sorted().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+    
+    private void unlockStripes(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+    
+    private ReentrantLock lockFor(Long userId) {
+        return locks[stripe(userId)];
+    }
+    
+    private int stripe(Long userId) {
+        return Math.floorMod(Long.hashCode(userId), LOCK_STRIPES);
+    }
+    
+    private static final class BufferedCart {
+        
+        private final Long cartId;
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private Map<Long, Integer> quantities;
+        private Map<Long, Integer> flushed;
+        private long version;
+        private long flushedVersion;
+        private volatile boolean dirty;
+        
+        private BufferedCart(Long cartId, Map<Long, Integer> quantities) {
+            this.cartId = cartId;
+            this.quantities = quantities;
+            this.flushed = quantities;
+        }
+        
+        // Target quantity of every line changed since the last flush; zero removes the line
+        private Snapshot snapshot() {
+            Map<Long, Integer> changes = new HashMap<>();
+            quantities.forEach((productId, quantity) -> {
+                if (!quantity.equals(flushed.get(productId))) {
+                    changes.put(productId, quantity);
+                }
+            });
+            flushed.keySet().forEach(productId -> {
+                if (!quantities.containsKey(productId)) {
+                    changes.put(productId, 0);
+                }
+            });
+            return new Snapshot(quantities, version, changes);
+        }
+        
+        private void markFlushed(Snapshot snapshot) {
+            if (snapshot.version > flushedVersion) {
+                flushed = snapshot.quantities;
+                flushedVersion = snapshot.version;
+            }
+            dirty = version != flushedVersion;
+        }
+    }
+    
+    private record Snapshot(Map<Long, Integer> quantities, long version, Map<Long, Integer> changes) {
+    }
+    
+    private record PendingFlush(Long userId, BufferedCart cart, Snapshot snapshot) {
+    }
+}
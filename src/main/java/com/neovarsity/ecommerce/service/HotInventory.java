@@ -0,0 +1,330 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.repository.OrderItemRepository;
+import com.neovarsity.ecommerce.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stock of products marked hot is held in striped in-memory counters, so checkouts of a
+// flash-sale product do not queue on its products row. Each reservation is recorded as
+// an order line with stock_applied = false in the order's own transaction, and a
+// periodic reconciliation subtracts those lines from products.stock_quantity. The
+// counters are only valid for a single application instance.
+@Component
+public class HotInventory {
+    
+    public enum Reservation { RESERVED, INSUFFICIENT, NOT_HOT }
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${product.hot.stripes:16}")
+    private int stripes;
+    
+    @Value("${product.hot.reconcile-chunk-size:1000}")
+    private int reconcileChunkSize;
+    
+    @Value("${product.hot.drain-timeout:PT10S}")
+    private Duration drainTimeout;
+    
+    private final Map<Long, StripedStock> counters = new ConcurrentHashMap<>();
+    private final LongAdder stockChanges = new LongAdder();
+    private TransactionTemplate transactionTemplate;
+    private Counter reconciled;
+    
+    // Lines committed before a restart may not have been applied yet. Applying them and
+    // then reading the stock gives what is really left; reservations whose orders had
+    // not committed were lost with the old process and never left the stock.
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        reconciled = Counter.builder("product.hot.reconciled")
+                .description("Units of hot product stock written back to the database")
+                .register(meterRegistry);
+        Gauge.builder("product.hot.products", counters, Map::size)
+                .description("Products whose stock is held in memory")
+                .register(meterRegistry);
+        
+        counters.clear();
+        for (Long productId : productRepository.findHotIds()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                productRepository.findForUpdate(productId);
+                applyPending(productId);
+                counters.put(productId, new StripedStock(productRepository.findStockQuantityById(productId), stripes));
+            });
+        }
+    }
+    
+    // Takes stock from the product's counters when it is hot. Must run inside the order's
+    // transaction: the stock is handed back if that transaction rolls back.
+    public Reservation reserve(Long productId, int quantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Hot stock can only be reserved inside a transaction");
+        }
+        StripedStock stock = counters.get(productId);
+        if (stock == null || !stock.enter()) {
+            return Reservation.NOT_HOT;
+        }
+        if (!stock.take(quantity)) {
+            stock.exit();
+            return Reservation.INSUFFICIENT;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    stock.give(quantity);
+                    stockChanges.increment();
+                }
+                stock.exit();
+            }
+        });
+        stockChanges.increment();
+        return Reservation.RESERVED;
+    }
+    
+    public Integer available(Long productId) {
+        StripedStock stock = counters.get(productId);
+        return stock == null ? null : (int) stock.available();
+    }
+    
+    public boolean hasHotProducts() {
+        return !counters.isEmpty();
+    }
+    
+    // Grows with every reservation and every one handed back, so responses that include
+    // live stock can be revalidated without comparing the stock itself.
+    public long stockVersion() {
+        return stockChanges.sum();
+    }
+    
+    // Marking takes the product row lock, which waits for checkouts still decrementing it
+    // in the database. The counters are published before the flag commits, so a checkout
+    // blocked on the row finds hot = true, updates nothing and falls back to them.
+    public void markHot(Long productId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Product product = lockProduct(productId);
+            if (Boolean.TRUE.equals(product.getHot())) {
+                return;
+            }
+            applyPending(productId);
+            StripedStock stock = new StripedStock(productRepository.findStockQuantityById(productId), stripes);
+            productRepository.updateHot(productId, true, LocalDateTime.now());
+            counters.put(productId, stock);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        counters.remove(productId, stock);
+                    }
+                }
+            });
+        });
+    }
+    
+    // New reservations are refused and those in flight are waited out before the row is
+    // locked; on MySQL their order line inserts need a shared lock on the same row. The
+    // product's checkouts fail as out of stock until the flag has committed.
+    public void unmarkHot(Long productId) {
+        StripedStock stock = counters.get(productId);
+        if (stock != null) {
+            stock.close();
+            if (!stock.awaitDrained(drainTimeout)) {
+                stock.reopen();
+                throw new RuntimeException("Checkouts of this product are still in progress, try again");
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lockProduct(productId);
+                applyPending(productId);
+                productRepository.updateHot(productId, false, LocalDateTime.now());
+            });
+        } catch (RuntimeException e) {
+            if (stock != null) {
+                stock.reopen();
+            }
+            throw e;
+        }
+        if (stock != null) {
+            counters.remove(productId, stock);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${product.hot.reconcile-interval:PT5S}")
+    public void reconcile() {
+        for (Long productId : orderItemRepository.findProductIdsWithUnappliedStock()) {
+            while (transactionTemplate.execute(status -> {
+                productRepository.findForUpdate(productId);
+                return applyChunk(productId);
+            }) == reconcileChunkSize) {
+                // keep going until the product has no unapplied lines left
+            }
+        }
+    }
+    
+    // The caller holds the product row lock, so lines are always locked after the product
+    // and a checkout's decrement cannot interleave with the write-back. Stock and flag are
+    // changed with bulk updates, leaving the locked entity clean so its stale stock is
+    // never flushed back.
+    private void applyPending(Long productId) {
+        while (applyChunk(productId) == reconcileChunkSize) {
+            // keep going until the product has no unapplied lines left
+        }
+    }
+    
+    private int applyChunk(Long productId) {
+        List<Long> lineIds = orderItemRepository.lockUnapplied(productId, reconcileChunkSize);
+        if (lineIds.isEmpty()) {
+            return 0;
+        }
+        long units = orderItemRepository.sumQuantities(lineIds);
+        productRepository.applyReservedStock(productId, units, LocalDateTime.now());
+        orderItemRepository.markStockApplied(lineIds);
+        reconciled.increment(units);
+        return lineIds.size();
+    }
+    
+    private Product lockProduct(Long productId) {
+        return productRepository.findForUpdate(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+    }
+    
+    // Available units split across stripes, each padded onto its own cache line so that
+    // concurrent reservations mostly update different memory. A reservation first looks
+    // for one stripe that covers it; only near sell-out does it gather units from
+    // several, handing them back if the total falls short.
+    static final class StripedStock {
+        
+        private static final int PADDING = 8;
+        
+        private final AtomicLongArray slots;
+        private final int stripeCount;
+        private final LongAdder inFlight = new LongAdder();
+        private volatile boolean closed;
+        
+        StripedStock(long available, int stripeCount) {
+            this.stripeCount = stripeCount;
+            this.slots = new AtomicLongArray(stripeCount * PADDING);
+            for (int i = 0; i < stripeCount; i++) {
+                slots.set(i * PADDING, available / stripeCount + (i < available % stripeCount ? 1 : 0));
+            }
+        }
+        
+        boolean enter() {
+            inFlight.increment();
+            if (closed) {
+                inFlight.decrement();
+                return false;
+            }
+            return true;
+        }
+        
+        void exit() {
+            inFlight.decrement();
+        }
+        
+        void close() {
+            closed = true;
+        }
+        
+        void reopen() {
+            closed = false;
+        }
+        
+        boolean awaitDrained(Duration timeout) {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (inFlight.sum() > 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        boolean take(int quantity) {
+            int start = ThreadLocalRandom.current().nextInt(stripeCount);
+            for (int i = 0; i < stripeCount; i++) {
+                int slot = ((start + i) % stripeCount) * PADDING;
+                long current;
+                while ((current = slots.get(slot)) >= quantity) {
+                    if (slots.compareAndSet(slot, current, current - quantity)) {
+                        return true;
+                    }
+                }
+            }
+            
+            long[] taken = new long[stripeCount];
+            long needed = quantity;
+            for (int i = 0; i < stripeCount && needed > 0; i++) {
+                int stripe = (start + i) % stripeCount;
+                long current;
+                while ((current = slots.get(stripe * PADDING)) > 0) {
+                    long part = Math.min(current, needed);
+                    if (slots.compareAndSet(stripe * PADDING, current, current - part)) {
+                        taken[stripe] += part;
+                        needed -= part;
+                        break;
+                    }
+                }
+            }
+            if (needed > 0) {
+                for (int stripe = 0; stripe < stripeCount; stripe++) {
+                    if (taken[stripe] > 0) {
+                        slots.addAndGet(stripe * PADDING, taken[stripe]);
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+        
+        void give(int quantity) {
+            slots.addAndGet(ThreadLocalRandom.current().nextInt(stripeCount) * PADDING, quantity);
+        }
+        
+        long available() {
+            long total = 0;
+            for (int i = 0; i < stripeCount; i++) {
+                total += slots.get(i * PADDING);
+            }
+            return total;
+        }
+    }
+}
@@ -4,14 +4,18 @@ import com.neovarsity.ecommerce.dto.OrderRequest;
 import com.neovarsity.ecommerce.model.*;
 import com.neovarsity.ecommerce.repository.CartRepository;
 import com.neovarsity.ecommerce.repository.OrderRepository;
-import com.neovarsity.ecommerce.repository.UserRepository;
+import com.neovarsity.ecommerce.repository.ProductRepository;
+import com.neovarsity.ecommerce.security.CurrentUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,22 +28,38 @@ public class OrderService {
     private OrderRepository orderRepository;
     
     @Autowired
-    private UserRepository userRepository;
+    private CurrentUser currentUser;
     
     @Autowired
     private CartRepository cartRepository;
     
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String email = authentication.getName();
-        return userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-    }
+    @Autowired
+    private ProductRepository productRepository;
     
-    @Transactional
+    @Autowired
+    private ProductCache productCache;
+    
+    @Autowired
+    private CartWriteBehindStore cartStore;
+    
+    @Autowired
+    private HotInventory hotInventory;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    // Buffered cart changes are written before the order reads the cart, and the cart
+    // takes no new changes until the order has committed.
     public Map<String, Object> createOrder(OrderRequest request) {
-        User user = getCurrentUser();
-        Cart cart = cartRepository.findByUserId(user.getId())
+        return cartStore.writeThrough(currentUser.getId(), () -> new TransactionTemplate(transactionManager)
+                .execute(status -> createOrder(currentUser.getReference(), request)));
+    }
+    
+    private Map<String, Object> createOrder(User user, OrderRequest request) {
+        Long cartId = cartRepository.findIdByUserId(user.getId())
+                .orElseThrow(() -> new RuntimeException("Cart is empty"));
+        cartRepository.touch(cartId, LocalDateTime.now());
+        Cart cart = cartRepository.findWithItemsByUserId(user.getId())
                 .orElseThrow(() -> new RuntimeException("Cart is empty"));
         
         if (cart.getItems().isEmpty()) {
@@ -53,32 +73,39 @@ public class OrderService {
         order.setStatus(Order.OrderStatus.PENDING);
         
         BigDecimal totalAmount = BigDecimal.ZERO;
+        List<Long> productIds = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
         
-        for (CartItem cartItem : cart.getItems()) {
+        // Stock is taken with a conditional decrement, so two checkouts can never both
+        // take the last unit; a shortfall throws and rolls back the lines already taken.
+        // Products are decremented in id order so concurrent orders lock them in the
+        // same order and cannot deadlock.
+        List<CartItem> cartItems = new ArrayList<>(cart.getItems());
+        cartItems.sort(Comparator.comparing(cartItem -> cartItem.getProduct().getId()));
+        for (CartItem cartItem : cartItems) {
             Product product = cartItem.getProduct();
             
-            if (product.getStockQuantity() < cartItem.getQuantity()) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName());
-            }
-            
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
             orderItem.setProduct(product);
             orderItem.setQuantity(cartItem.getQuantity());
             orderItem.setPrice(product.getPrice());
+            takeStock(orderItem, now);
             
             order.getItems().add(orderItem);
             
             totalAmount = totalAmount.add(product.getPrice()
                     .multiply(BigDecimal.valueOf(cartItem.getQuantity())));
-            
-            product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
+            productIds.add(product.getId());
         }
         
         order.setTotalAmount(totalAmount);
         order = orderRepository.save(order);
+        productCache.evictAll(productIds);
         
         cart.getItems().clear();
+        cart.setSubtotal(BigDecimal.ZERO);
+        cart.setItemCount(0);
         cartRepository.save(cart);
         
         Map<String, Object> response = new HashMap<>();
@@ -89,9 +116,28 @@ public class OrderService {
         return response;
     }
     
+    // Hot products are reserved from in-memory counters and their lines are written back
+    // to the database stock later. A product that turns hot while its row is being
+    // decremented leaves the decrement with nothing to update, so the counters are tried
+    // once more before the line is rejected.
+    private void takeStock(OrderItem orderItem, LocalDateTime now) {
+        Product product = orderItem.getProduct();
+        HotInventory.Reservation reservation = hotInventory.reserve(product.getId(), orderItem.getQuantity());
+        if (reservation == HotInventory.Reservation.NOT_HOT
+                && productRepository.decrementStock(product.getId(), orderItem.getQuantity(), now) == 1) {
+            return;
+        }
+        if (reservation == HotInventory.Reservation.NOT_HOT) {
+            reservation = hotInventory.reserve(product.getId(), orderItem.getQuantity());
+        }
+        if (reservation != HotInventory.Reservation.RESERVED) {
+            throw new RuntimeException("Insufficient stock for product: " + product.getName());
+        }
+        orderItem.setStockApplied(false);
+    }
+    
     public List<Map<String, Object>> getUserOrders() {
-        User user = getCurrentUser();
-        List<Order> orders = orderRepository.findByUserId(user.getId());
+        List<Order> orders = orderRepository.findWithItemsByUserId(currentUser.getId());
         
         return orders.stream().map(order -> {
             Map<String, Object> orderMap = new HashMap<>();
@@ -107,11 +153,11 @@ public class OrderService {
     }
     
     public Map<String, Object> getOrderById(Long orderId) {
-        User user = getCurrentUser();
-        Order order = orderRepository.findById(orderId)
+        Long userId = currentUser.getId();
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
         
-        if (!order.getUser().getId().equals(user.getId())) {
+        if (!order.getUser().getId().equals(userId)) {
             throw new RuntimeException("Unauthorized access to order");
         }
         
@@ -0,0 +1,71 @@
+package com.neovarsity.ecommerce.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.neovarsity.ecommerce.dto.ProductResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+@Component
+public class ProductCache {
+    
+    @Value("${product.cache.max-size:10000}")
+    private long maxSize;
+    
+    @Value("${product.cache.ttl:10m}")
+    private Duration ttl;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Cache<Long, ProductResponse> cache;
+    
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+    
+    public ProductResponse get(Long id, Function<Long, ProductResponse> loader) {
+        return cache.get(id, loader);
+    }
+    
+    public ProductResponse getIfPresent(Long id) {
+        return cache.getIfPresent(id);
+    }
+    
+    public void evict(Long id) {
+        evictAll(List.of(id));
+    }
+    
+    // Evicting only once the writing transaction has committed means a concurrent
+    // read-through cannot repopulate the entry with the pre-commit row. Caffeine
+    // blocks the invalidation until any in-flight load of the same key finishes.
+    public void evictAll(Collection<Long> ids) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateAll(ids);
+                }
+            });
+        } else {
+            cache.invalidateAll(ids);
+        }
+    }
+}
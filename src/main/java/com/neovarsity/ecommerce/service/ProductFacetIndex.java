@@ -0,0 +1,127 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.ProductFacetResponse;
+import com.neovarsity.ecommerce.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+public class ProductFacetIndex {
+    
+    @Value("${product.facets.price-buckets:25,50,100,250,500,1000}")
+    private List<BigDecimal> priceBoundaries;
+    
+    private final Map<Long, FacetKey> products = new HashMap<>();
+    private final Map<FacetKey, Long> counts = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    public void index(Product product) {
+        FacetKey key = new FacetKey(product.getCategory(), product.getBrand(), priceBucket(product.getPrice()));
+        lock.writeLock().lock();
+        try {
+            removeLocked(product.getId());
+            products.put(product.getId(), key);
+            counts.merge(key, 1L, Long::sum);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            products.clear();
+            counts.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public ProductFacetResponse facets(String category, String brand, String priceBucket) {
+        Map<String, Long> categories = new TreeMap<>();
+        Map<String, Long> brands = new TreeMap<>();
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (String label : bucketLabels()) {
+            buckets.put(label, 0L);
+        }
+        long total = 0;
+        
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<FacetKey, Long> entry : counts.entrySet()) {
+                FacetKey key = entry.getKey();
+                long count = entry.getValue();
+                boolean categoryMatches = category == null || category.equals(key.category());
+                boolean brandMatches = brand == null || brand.equals(key.brand());
+                boolean bucketMatches = priceBucket == null || priceBucket.equals(key.priceBucket());
+                
+                if (brandMatches && bucketMatches) {
+                    categories.merge(key.category(), count, Long::sum);
+                }
+                if (categoryMatches && bucketMatches) {
+                    brands.merge(key.brand(), count, Long::sum);
+                }
+                if (categoryMatches && brandMatches) {
+                    buckets.merge(key.priceBucket(), count, Long::sum);
+                }
+                if (categoryMatches && brandMatches && bucketMatches) {
+                    total += count;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ProductFacetResponse(total, categories, brands, buckets);
+    }
+    
+    private void removeLocked(Long productId) {
+        FacetKey key = products.remove(productId);
+        if (key != null) {
+            counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+    
+    private String priceBucket(BigDecimal price) {
+        BigDecimal lower = BigDecimal.ZERO;
+        for (BigDecimal boundary : priceBoundaries) {
+            if (price.compareTo(boundary) < 0) {
+                return lower.toPlainString() + "-" + boundary.toPlainString();
+            }
+            lower = boundary;
+        }
+        return lower.toPlainString() + "+";
+    }
+    
+    private List<String> bucketLabels() {
+        List<String> labels = new ArrayList<>();
+        BigDecimal lower = BigDecimal.ZERO;
+        for (BigDecimal boundary : priceBoundaries) {
+            labels.add(lower.toPlainString() + "-" + boundary.toPlainString());
+            lower = boundary;
+        }
+        labels.add(lower.toPlainString() + "+");
+        return labels;
+    }
+    
+    private record FacetKey(String category, String brand, String priceBucket) {
+    }
+}
@@ -0,0 +1,257 @@
+package com.neovarsity.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovarsity.ecommerce.dto.ProductImportResponse;
+import com.neovarsity.ecommerce.dto.ProductRequest;
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class ProductImportService {
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${product.import.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${product.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+    
+    public ProductImportResponse importCsv(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        ImportJob job = new ImportJob();
+        
+        List<String> header = readCsvRecord(reader);
+        while (header != null && isBlank(header)) {
+            header = readCsvRecord(reader);
+        }
+        if (header == null) {
+            return job.finish();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        
+        List<String> record;
+        while ((record = readCsvRecord(reader)) != null) {
+            if (isBlank(record)) {
+                continue;
+            }
+            long row = job.nextRow();
+            try {
+                job.accept(row, fromCsv(record, columns));
+            } catch (IllegalArgumentException e) {
+                job.reject(row, e.getMessage());
+            }
+        }
+        return job.finish();
+    }
+    
+    public ProductImportResponse importNdjson(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        ImportJob job = new ImportJob();
+        
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long row = job.nextRow();
+            try {
+                job.accept(row, objectMapper.readValue(line, ProductRequest.class));
+            } catch (JsonProcessingException e) {
+                job.reject(row, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+        return job.finish();
+    }
+    
+    private ProductRequest fromCsv(List<String> record, Map<String, Integer> columns) {
+        ProductRequest request = new ProductRequest();
+        request.setName(column(record, columns, "name"));
+        request.setDescription(column(record, columns, "description"));
+        request.setCategory(column(record, columns, "category"));
+        request.setBrand(column(record, columns, "brand"));
+        request.setImageUrl(column(record, columns, "imageurl"));
+        
+        String price = column(record, columns, "price");
+        String stockQuantity = column(record, columns, "stockquantity");
+        try {
+            request.setPrice(price == null ? null : new BigDecimal(price.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("price: not a number");
+        }
+        try {
+            request.setStockQuantity(stockQuantity == null ? null : Integer.valueOf(stockQuantity.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("stockQuantity: not an integer");
+        }
+        return request;
+    }
+    
+    // An empty line, or one holding only whitespace, parses as a single blank field.
+    private static boolean isBlank(List<String> record) {
+        return record.size() == 1 && record.get(0).isBlank();
+    }
+    
+    private String column(List<String> record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+            return null;
+        }
+        return record.get(index);
+    }
+    
+    private List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private class ImportJob {
+        
+        private final ProductImportResponse response = new ProductImportResponse();
+        private final List<Product> chunk = new ArrayList<>(chunkSize);
+        private final List<Long> chunkRows = new ArrayList<>(chunkSize);
+        private final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        
+        long nextRow() {
+            response.setProcessed(response.getProcessed() + 1);
+            return response.getProcessed();
+        }
+        
+        void accept(long row, ProductRequest request) {
+            Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                reject(row, violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+            
+            Product product = new Product();
+            product.setName(request.getName());
+            product.setDescription(request.getDescription());
+            product.setPrice(request.getPrice());
+            product.setStockQuantity(request.getStockQuantity());
+            product.setCategory(request.getCategory());
+            product.setBrand(request.getBrand());
+            product.setImageUrl(request.getImageUrl());
+            product.setActive(true);
+            
+            chunk.add(product);
+            chunkRows.add(row);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+        
+        void reject(long row, String message) {
+            response.setFailed(response.getFailed() + 1);
+            if (response.getErrors().size() < maxReportedErrors) {
+                response.getErrors().add(new ProductImportResponse.RowError(row, message));
+            } else {
+                response.setErrorsTruncated(true);
+            }
+        }
+        
+        ProductImportResponse finish() {
+            flush();
+            return response;
+        }
+        
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> productRepository.saveAll(chunk));
+                chunk.forEach(productService::onProductChanged);
+                response.setImported(response.getImported() + chunk.size());
+            } catch (RuntimeException e) {
+                String message = "Chunk rejected by database: "
+                        + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                chunkRows.forEach(row -> reject(row, message));
+            } finally {
+                chunk.clear();
+                chunkRows.clear();
+                entityManager.clear();
+            }
+        }
+    }
+}
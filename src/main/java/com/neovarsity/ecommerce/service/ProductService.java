@@ -1,15 +1,39 @@
 package com.neovarsity.ecommerce.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovarsity.ecommerce.dto.ProductFacetResponse;
+import com.neovarsity.ecommerce.dto.ProductPageResponse;
 import com.neovarsity.ecommerce.dto.ProductRequest;
 import com.neovarsity.ecommerce.dto.ProductResponse;
+import com.neovarsity.ecommerce.dto.ProductSuggestion;
 import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.repository.CartRepository;
 import com.neovarsity.ecommerce.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
@@ -17,6 +41,54 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private CartRepository cartRepository;
+    
+    @Autowired
+    private ProductSearchIndex searchIndex;
+    
+    @Autowired
+    private ProductFacetIndex facetIndex;
+    
+    @Autowired
+    private ProductSuggestIndex suggestIndex;
+    
+    @Autowired
+    private ProductCache productCache;
+    
+    @Autowired
+    private HotInventory hotInventory;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${product.search.max-results:100}")
+    private int maxSearchResults;
+    
+    @Value("${product.suggest.max-results:20}")
+    private int maxSuggestions;
+    
+    @Value("${product.page.max-limit:100}")
+    private int maxPageLimit;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildIndexes() {
+        searchIndex.clear();
+        facetIndex.clear();
+        suggestIndex.clear();
+        try (Stream<Product> products = productRepository.streamActiveProducts()) {
+            products.forEach(product -> {
+                index(product);
+                entityManager.detach(product);
+            });
+        }
+        suggestIndex.refresh();
+    }
+    
     @Transactional
     public ProductResponse createProduct(ProductRequest request) {
         Product product = new Product();
@@ -30,59 +102,239 @@ public class ProductService {
         product.setActive(true);
         
         product = productRepository.save(product);
+        onProductChanged(product);
         return mapToResponse(product);
     }
     
-    public List<ProductResponse> getAllProducts() {
-        return productRepository.findByActiveTrue().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public ProductPageResponse getAllProducts(String cursor, int limit) {
+        int pageSize = clampLimit(limit);
+        List<Product> products = productRepository.findByActiveTrueAndIdGreaterThanOrderByIdAsc(
+                decodeCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return toPage(products, pageSize);
     }
     
+    // The cache holds the database stock; a hot product's live stock is laid over a copy
+    // on the way out, so the cached entry never goes stale while the counters move.
     public ProductResponse getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
-        return mapToResponse(product);
+        suggestIndex.recordView(id);
+        return withLiveStock(productCache.get(id, key -> productRepository.findById(key)
+                .map(this::toResponse)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + key))));
     }
     
-    public List<ProductResponse> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public ProductPageResponse getProductsByCategory(String category, String cursor, int limit) {
+        int pageSize = clampLimit(limit);
+        List<Product> products = productRepository.findByCategoryAndActiveTrueAndIdGreaterThanOrderByIdAsc(
+                category, decodeCursor(cursor), PageRequest.of(0, pageSize + 1));
+        return toPage(products, pageSize);
+    }
+    
+    public Optional<LocalDateTime> getProductLastModified(Long id) {
+        ProductResponse cached = productCache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.ofNullable(cached.getUpdatedAt());
+        }
+        return productRepository.findUpdatedAtById(id);
+    }
+    
+    public Optional<LocalDateTime> getCatalogLastModified() {
+        return productRepository.findLatestUpdatedAt();
+    }
+    
+    // updatedAt does not move when a hot product's live stock does, so responses showing
+    // that stock are also validated by it: the product's own stock, or for listings the
+    // version of all hot stock.
+    public Optional<String> getProductStockVersion(Long id) {
+        return Optional.ofNullable(hotInventory.available(id)).map(Integer::toHexString);
+    }
+    
+    public Optional<String> getCatalogStockVersion() {
+        return hotInventory.hasHotProducts()
+                ? Optional.of(Long.toHexString(hotInventory.stockVersion()))
+                : Optional.empty();
+    }
+    
+    @Transactional(readOnly = true)
+    public long exportActiveProducts(OutputStream out) throws IOException {
+        long count = 0;
+        try (Stream<Product> products = productRepository.streamActiveProducts()) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product product = iterator.next();
+                out.write(objectMapper.writeValueAsBytes(mapToResponse(product)));
+                out.write('\n');
+                entityManager.detach(product);
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+    
+    public ProductFacetResponse getFacets(String category, String brand, String priceBucket) {
+        return facetIndex.facets(category, brand, priceBucket);
+    }
+    
+    public List<ProductSuggestion> suggestProducts(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, Math.min(limit, maxSuggestions));
     }
     
-    public List<ProductResponse> searchProducts(String keyword) {
-        return productRepository.searchProducts(keyword).stream()
+    public List<ProductResponse> searchProducts(String keyword, int limit) {
+        List<Long> ids = searchIndex.search(keyword, Math.min(limit, maxSearchResults));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, Product> products = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
                 .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
     
+    // The row is locked so the update cannot write back a stock level that checkouts or
+    // the hot stock reconciliation have since moved. A hot product's stock lives in memory
+    // and cannot be set here: an edit must carry the stock it currently reports, and one
+    // that changes it is rejected until the product is unmarked. For a price change, the
+    // carts holding the product are locked before the product row, the order checkout
+    // takes them in, and their totals are recomputed at the new price.
     @Transactional
     public ProductResponse updateProduct(Long id, ProductRequest request) {
-        Product product = productRepository.findById(id)
+        Product current = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        boolean repricing = current.getPrice().compareTo(request.getPrice()) != 0;
+        entityManager.detach(current);
+        List<Long> cartIds = repricing ? cartRepository.lockContaining(id) : List.of();
         
+        Product product = productRepository.findForUpdate(id)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        if (!repricing && product.getPrice().compareTo(request.getPrice()) != 0) {
+            throw new RuntimeException("Product was changed concurrently, please retry");
+        }
+        if (Boolean.TRUE.equals(product.getHot())
+                && !request.getStockQuantity().equals(reportedStock(product))) {
+            throw new RuntimeException("Stock of a hot product cannot be changed, unmark the product first");
+        }
         product.setName(request.getName());
         product.setDescription(request.getDescription());
         product.setPrice(request.getPrice());
-        product.setStockQuantity(request.getStockQuantity());
+        if (!Boolean.TRUE.equals(product.getHot())) {
+            product.setStockQuantity(request.getStockQuantity());
+        }
         product.setCategory(request.getCategory());
         product.setBrand(request.getBrand());
         product.setImageUrl(request.getImageUrl());
         
-        product = productRepository.save(product);
+        product = productRepository.saveAndFlush(product);
+        if (!cartIds.isEmpty()) {
+            cartRepository.recomputeTotals(cartIds);
+        }
+        onProductChanged(product);
         return mapToResponse(product);
     }
     
     @Transactional
     public void deleteProduct(Long id) {
-        Product product = productRepository.findById(id)
+        Product product = productRepository.findForUpdate(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         product.setActive(false);
         productRepository.save(product);
+        onProductChanged(product);
+    }
+    
+    public ProductResponse setHot(Long id, boolean hot) {
+        if (hot) {
+            hotInventory.markHot(id);
+        } else {
+            hotInventory.unmarkHot(id);
+        }
+        Product product = productRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        onProductChanged(product);
+        return mapToResponse(product);
+    }
+    
+    // Like the cache eviction, the index update waits for the writing transaction to
+    // commit, so a rollback cannot leave the indexes describing a row that never existed.
+    public void onProductChanged(Product product) {
+        productCache.evict(product.getId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(product);
+                }
+            });
+        } else {
+            index(product);
+        }
+    }
+    
+    private void index(Product product) {
+        if (Boolean.TRUE.equals(product.getActive())) {
+            searchIndex.index(product);
+            facetIndex.index(product);
+            suggestIndex.index(product);
+        } else {
+            searchIndex.remove(product.getId());
+            facetIndex.remove(product.getId());
+            suggestIndex.remove(product.getId());
+        }
+    }
+    
+    private ProductPageResponse toPage(List<Product> products, int pageSize) {
+        boolean hasMore = products.size() > pageSize;
+        List<Product> page = hasMore ? products.subList(0, pageSize) : products;
+        List<ProductResponse> items = page.stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+        String next = hasMore ? encodeCursor(page.get(page.size() - 1).getId()) : null;
+        return new ProductPageResponse(items, next);
+    }
+    
+    private int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, maxPageLimit));
+    }
+    
+    private static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastId).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+    
+    // The database stock stands in when this instance holds no counters for the product
+    private Integer reportedStock(Product product) {
+        Integer live = hotInventory.available(product.getId());
+        return live != null ? live : product.getStockQuantity();
     }
     
     private ProductResponse mapToResponse(Product product) {
+        return withLiveStock(toResponse(product));
+    }
+    
+    private ProductResponse withLiveStock(ProductResponse response) {
+        Integer live = Boolean.TRUE.equals(response.getHot()) ? hotInventory.available(response.getId()) : null;
+        if (live == null) {
+            return response;
+        }
+        return new ProductResponse(response.getId(), response.getName(), response.getDescription(),
+                response.getPrice(), live, response.getCategory(), response.getBrand(), response.getImageUrl(),
+                response.getActive(), response.getHot(), response.getCreatedAt(), response.getUpdatedAt());
+    }
+    
+    private ProductResponse toResponse(Product product) {
         ProductResponse response = new ProductResponse();
         response.setId(product.getId());
         response.setName(product.getName());
@@ -93,6 +345,7 @@ public class ProductService {
         response.setBrand(product.getBrand());
         response.setImageUrl(product.getImageUrl());
         response.setActive(product.getActive());
+        response.setHot(product.getHot());
         response.setCreatedAt(product.getCreatedAt());
         response.setUpdatedAt(product.getUpdatedAt());
         return response;
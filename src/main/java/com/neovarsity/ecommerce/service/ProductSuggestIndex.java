@@ -0,0 +1,222 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.ProductSuggestion;
+import com.neovarsity.ecommerce.model.Product;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class ProductSuggestIndex {
+    
+    private static final String PRODUCT = "PRODUCT";
+    private static final String BRAND = "BRAND";
+    private static final char SEPARATOR = '\u0000';
+    
+    private static final Comparator<Ranked> RANKING = Comparator
+            .comparingLong((Ranked ranked) -> ranked.popularity).reversed()
+            .thenComparing(ranked -> ranked.entry.text)
+            .thenComparing(ranked -> ranked.entry.key);
+    
+    @Value("${product.suggest.bucket-length:3}")
+    private int bucketLength;
+    
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> products = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> views = new ConcurrentHashMap<>();
+    private volatile Map<String, NavigableSet<Ranked>> buckets = new ConcurrentHashMap<>();
+    
+    // New and renamed products go straight into their prefix buckets, ranked by the views
+    // they have now; the refresh only re-ranks. An edit that keeps the name and brand
+    // keeps the entry and its place.
+    public synchronized void index(Product product) {
+        Entry current = products.get(product.getId());
+        if (current != null && current.text.equals(product.getName())
+                && Objects.equals(current.brand, product.getBrand())) {
+            return;
+        }
+        removeLocked(product.getId());
+        
+        String key = key(product.getName(), PRODUCT + product.getId());
+        Entry entry = new Entry(key, product.getName(), PRODUCT, product.getId(), product.getBrand(),
+                views.computeIfAbsent(product.getId(), id -> new LongAdder()));
+        entries.put(key, entry);
+        products.put(product.getId(), entry);
+        link(entry);
+        
+        String brandKey = key(product.getBrand(), BRAND);
+        Entry brand = entries.computeIfAbsent(brandKey,
+                k -> new Entry(k, product.getBrand(), BRAND, null, null, new LongAdder()));
+        brand.popularity.increment();
+        if (brand.ranked == null) {
+            link(brand);
+        }
+    }
+    
+    public synchronized void remove(Long productId) {
+        removeLocked(productId);
+        views.remove(productId);
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+        products.clear();
+        buckets = new ConcurrentHashMap<>();
+    }
+    
+    public void recordView(Long productId) {
+        LongAdder counter = views.get(productId);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+    
+    // Re-ranks every entry by a snapshot of its popularity. Each prefix of up to
+    // bucket-length characters holds all its completions, most popular first, so the top
+    // N for a short prefix are simply the first N; a longer prefix filters the bucket of
+    // its first characters in the same order.
+    @Scheduled(fixedDelayString = "${product.suggest.refresh-interval:PT10S}")
+    public synchronized void refresh() {
+        Map<String, NavigableSet<Ranked>> next = new ConcurrentHashMap<>();
+        for (Entry entry : entries.values()) {
+            entry.ranked = new Ranked(entry, entry.popularity.sum());
+            addTo(next, entry.ranked);
+        }
+        buckets = next;
+    }
+    
+    // Names shared by several products are listed once, under the most popular of them
+    // that is still indexed.
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        NavigableSet<Ranked> bucket = buckets.get(
+                normalized.substring(0, Math.min(bucketLength, normalized.length())));
+        if (bucket == null) {
+            return List.of();
+        }
+        List<ProductSuggestion> result = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        for (Ranked candidate : bucket) {
+            if (result.size() >= limit) {
+                break;
+            }
+            Entry entry = candidate.entry;
+            if (candidate.normalized.startsWith(normalized) && seen.add(entry.type + SEPARATOR + entry.text)) {
+                result.add(new ProductSuggestion(entry.text, entry.type, entry.productId));
+            }
+        }
+        return result;
+    }
+    
+    private void removeLocked(Long productId) {
+        Entry previous = products.remove(productId);
+        if (previous == null) {
+            return;
+        }
+        entries.remove(previous.key);
+        unlink(previous);
+        
+        String brandKey = key(previous.brand, BRAND);
+        Entry brand = entries.get(brandKey);
+        if (brand != null) {
+            brand.popularity.decrement();
+            if (brand.popularity.sum() <= 0) {
+                entries.remove(brandKey);
+                unlink(brand);
+            }
+        }
+    }
+    
+    private void link(Entry entry) {
+        entry.ranked = new Ranked(entry, entry.popularity.sum());
+        addTo(buckets, entry.ranked);
+    }
+    
+    private void unlink(Entry entry) {
+        if (entry.ranked == null) {
+            return;
+        }
+        for (String prefix : prefixes(entry.ranked.normalized)) {
+            NavigableSet<Ranked> bucket = buckets.get(prefix);
+            if (bucket != null) {
+                bucket.remove(entry.ranked);
+                if (bucket.isEmpty()) {
+                    buckets.remove(prefix);
+                }
+            }
+        }
+        entry.ranked = null;
+    }
+    
+    private void addTo(Map<String, NavigableSet<Ranked>> target, Ranked ranked) {
+        for (String prefix : prefixes(ranked.normalized)) {
+            target.computeIfAbsent(prefix, k -> new ConcurrentSkipListSet<>(RANKING)).add(ranked);
+        }
+    }
+    
+    private List<String> prefixes(String normalized) {
+        List<String> prefixes = new ArrayList<>(bucketLength);
+        for (int length = 1; length <= Math.min(bucketLength, normalized.length()); length++) {
+            prefixes.add(normalized.substring(0, length));
+        }
+        return prefixes;
+    }
+    
+    private static String key(String text, String discriminator) {
+        return normalize(text) + SEPARATOR + discriminator;
+    }
+    
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static final class Entry {
+        
+        private final String key;
+        private final String text;
+        private final String type;
+        private final Long productId;
+        private final String brand;
+        private final LongAdder popularity;
+        private Ranked ranked;
+        
+        private Entry(String key, String text, String type, Long productId, String brand, LongAdder popularity) {
+            this.key = key;
+            this.text = text;
+            this.type = type;
+            this.productId = productId;
+            this.brand = brand;
+            this.popularity = popularity;
+        }
+    }
+    
+    private static final class Ranked {
+        
+        private final Entry entry;
+        private final String normalized;
+        private final long popularity;
+        
+        private Ranked(Entry entry, long popularity) {
+            this.entry = entry;
+            this.normalized = normalize(entry.text);
+            this.popularity = popularity;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserCacheInvalidator {
+    
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+    
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        userPrincipalCache.evict(user.getEmail());
+    }
+}
@@ -0,0 +1,177 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.config.BoundedPasswordEncoder;
+import com.neovarsity.ecommerce.dto.UserProvisionResponse;
+import com.neovarsity.ecommerce.dto.UserRegistrationRequest;
+import com.neovarsity.ecommerce.model.Cart;
+import com.neovarsity.ecommerce.model.User;
+import com.neovarsity.ecommerce.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class UserProvisioningService {
+    
+    private static final String CREATED = "CREATED";
+    private static final String INVALID = "INVALID";
+    private static final String DUPLICATE = "DUPLICATE";
+    private static final String FAILED = "FAILED";
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private BoundedPasswordEncoder passwordEncoder;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${user.provision.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${user.provision.max-users:10000}")
+    private int maxUsers;
+    
+    public UserProvisionResponse provision(List<UserRegistrationRequest> requests) {
+        if (requests.size() > maxUsers) {
+            throw new RuntimeException("At most " + maxUsers + " users can be provisioned per request");
+        }
+        
+        UserProvisionResponse response = new UserProvisionResponse();
+        response.setRequested(requests.size());
+        UserProvisionResponse.Result[] results = new UserProvisionResponse.Result[requests.size()];
+        
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            UserRegistrationRequest request = requests.get(i);
+            String message = validate(request);
+            if (message != null) {
+                results[i] = result(i, request, INVALID, null, message);
+            } else if (!seen.add(normalize(request.getEmail()))) {
+                results[i] = result(i, request, DUPLICATE, null, "Email appears earlier in this request");
+            } else {
+                accepted.add(i);
+            }
+        }
+        
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            List<String> emails = accepted.subList(from, Math.min(from + chunkSize, accepted.size())).stream()
+                    .map(i -> normalize(requests.get(i).getEmail()))
+                    .collect(Collectors.toList());
+            userRepository.findExistingEmails(emails).forEach(email -> existing.add(normalize(email)));
+        }
+        accepted.removeIf(i -> {
+            if (existing.contains(normalize(requests.get(i).getEmail()))) {
+                results[i] = result(i, requests.get(i), DUPLICATE, null, "Email already exists");
+                return true;
+            }
+            return false;
+        });
+        
+        List<String> hashes = passwordEncoder.encodeAll(accepted.stream()
+                .map(i -> requests.get(i).getPassword())
+                .collect(Collectors.toList()));
+        
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, accepted.size());
+            List<User> chunk = new ArrayList<>(to - from);
+            for (int j = from; j < to; j++) {
+                chunk.add(newUser(requests.get(accepted.get(j)), hashes.get(j)));
+            }
+            
+            try {
+                transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(chunk));
+                for (int j = from; j < to; j++) {
+                    int index = accepted.get(j);
+                    results[index] = result(index, requests.get(index), CREATED, chunk.get(j - from).getId(), null);
+                }
+            } catch (RuntimeException e) {
+                String message = "Chunk rejected by database: "
+                        + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                for (int j = from; j < to; j++) {
+                    int index = accepted.get(j);
+                    results[index] = result(index, requests.get(index), FAILED, null, message);
+                }
+            } finally {
+                entityManager.clear();
+            }
+        }
+        
+        for (UserProvisionResponse.Result result : results) {
+            response.getResults().add(result);
+            if (CREATED.equals(result.getStatus())) {
+                response.setCreated(response.getCreated() + 1);
+            } else {
+                response.setFailed(response.getFailed() + 1);
+            }
+        }
+        return response;
+    }
+    
+    // Emails are compared without case, as the unique key on users.email does under
+    // MySQL's default collation; the lookup relies on that collation to match rows
+    // stored in another case.
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+    
+    private String validate(UserRegistrationRequest request) {
+        if (request == null) {
+            return "Record is empty";
+        }
+        Set<ConstraintViolation<UserRegistrationRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+    
+    private User newUser(UserRegistrationRequest request, String passwordHash) {
+        User user = new User();
+        user.setEmail(request.getEmail());
+        user.setPassword(passwordHash);
+        user.setFirstName(request.getFirstName());
+        user.setLastName(request.getLastName());
+        user.setPhoneNumber(request.getPhoneNumber());
+        user.setRole(User.Role.CUSTOMER);
+        user.setEnabled(true);
+        
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+        return user;
+    }
+    
+    private UserProvisionResponse.Result result(int index, UserRegistrationRequest request, String status,
+                                                Long userId, String message) {
+        String email = request == null ? null : request.getEmail();
+        return new UserProvisionResponse.Result(index, email, status, userId, message);
+    }
+}
@@ -0,0 +1,6 @@
+CREATE SEQUENCE user_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE product_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE cart_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE cart_item_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE order_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE order_item_seq START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,9 @@
+CREATE TABLE revoked_tokens (
+    jti VARCHAR(36) NOT NULL,
+    user_id BIGINT,
+    expires_at TIMESTAMP(6) NOT NULL,
+    revoked_at TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (jti)
+);
+
+CREATE INDEX idx_revoked_tokens_expires_at ON revoked_tokens (expires_at);
@@ -0,0 +1,11 @@
+-- Fold duplicate lines left by concurrent adds into the oldest row before
+-- enforcing one line per product in a cart.
+UPDATE cart_items ci
+SET quantity = (SELECT SUM(d.quantity) FROM cart_items d
+                WHERE d.cart_id = ci.cart_id AND d.product_id = ci.product_id)
+WHERE ci.id IN (SELECT MIN(id) FROM cart_items GROUP BY cart_id, product_id HAVING COUNT(*) > 1);
+
+DELETE FROM cart_items
+WHERE id NOT IN (SELECT MIN(id) FROM cart_items GROUP BY cart_id, product_id);
+
+ALTER TABLE cart_items ADD CONSTRAINT uk_cart_items_cart_product UNIQUE (cart_id, product_id);
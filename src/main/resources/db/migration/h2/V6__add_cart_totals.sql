@@ -0,0 +1,8 @@
+ALTER TABLE carts ADD COLUMN subtotal NUMERIC(38, 2) NOT NULL DEFAULT 0;
+ALTER TABLE carts ADD COLUMN item_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE carts
+SET subtotal = (SELECT COALESCE(SUM(ci.quantity * p.price), 0)
+                FROM cart_items ci JOIN products p ON p.id = ci.product_id
+                WHERE ci.cart_id = carts.id),
+    item_count = (SELECT COUNT(*) FROM cart_items ci WHERE ci.cart_id = carts.id);
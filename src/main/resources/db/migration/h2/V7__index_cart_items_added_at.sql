@@ -0,0 +1,2 @@
+-- AbandonedCartSweeper: walks stale cart lines oldest first (keyset on added_at, id).
+CREATE INDEX idx_cart_items_added_at ON cart_items (added_at, id);
@@ -0,0 +1,7 @@
+-- Hot products take stock from in-memory counters at checkout; their order lines are
+-- written back to products.stock_quantity later by HotInventory. Existing order lines
+-- have already been taken from stock.
+ALTER TABLE products ADD COLUMN hot BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE order_items ADD COLUMN stock_applied BOOLEAN NOT NULL DEFAULT TRUE;
+
+CREATE INDEX idx_order_items_stock_applied ON order_items (stock_applied, product_id);
@@ -0,0 +1,28 @@
+-- Pooled id generation (allocationSize = 50). MySQL has no sequences, so Hibernate
+-- emulates each one with a single-row table. Seed above the existing ids so the first
+-- block handed out (next_val - 49 .. next_val) cannot collide with rows created under
+-- AUTO_INCREMENT.
+
+CREATE TABLE IF NOT EXISTS user_seq (next_val BIGINT) ENGINE = InnoDB;
+DELETE FROM user_seq;
+INSERT INTO user_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM users;
+
+CREATE TABLE IF NOT EXISTS product_seq (next_val BIGINT) ENGINE = InnoDB;
+DELETE FROM product_seq;
+INSERT INTO product_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM products;
+
+CREATE TABLE IF NOT EXISTS cart_seq (next_val BIGINT) ENGINE = InnoDB;
+DELETE FROM cart_seq;
+INSERT INTO cart_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM carts;
+
+CREATE TABLE IF NOT EXISTS cart_item_seq (next_val BIGINT) ENGINE = InnoDB;
+DELETE FROM cart_item_seq;
+INSERT INTO cart_item_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM cart_items;
+
+CREATE TABLE IF NOT EXISTS order_seq (next_val BIGINT) ENGINE = InnoDB;
+DELETE FROM order_seq;
+INSERT INTO order_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM orders;
+
+CREATE TABLE IF NOT EXISTS order_item_seq (next_val BIGINT) ENGINE = InnoDB;
+DELETE FROM order_item_seq;
+INSERT INTO order_item_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM order_items;
@@ -0,0 +1,10 @@
+-- ProductRepository: active listing (keyset on id), category listing, brand lookup
+-- and the catalog Last-Modified probe.
+CREATE INDEX idx_products_active_id ON products (active, id);
+CREATE INDEX idx_products_category_active_id ON products (category, active, id);
+CREATE INDEX idx_products_brand ON products (brand);
+CREATE INDEX idx_products_updated_at ON products (updated_at);
+
+-- OrderRepository: per-user history and admin status filter, newest first.
+CREATE INDEX idx_orders_user_created ON orders (user_id, created_at);
+CREATE INDEX idx_orders_status_created ON orders (status, created_at);
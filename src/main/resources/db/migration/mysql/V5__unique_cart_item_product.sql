@@ -0,0 +1,13 @@
+-- Fold duplicate lines left by concurrent adds into the oldest row before
+-- enforcing one line per product in a cart.
+UPDATE cart_items ci
+JOIN (SELECT MIN(id) AS keep_id, SUM(quantity) AS total
+      FROM cart_items GROUP BY cart_id, product_id HAVING COUNT(*) > 1) d ON ci.id = d.keep_id
+SET ci.quantity = d.total;
+
+DELETE ci FROM cart_items ci
+JOIN (SELECT cart_id, product_id, MIN(id) AS keep_id
+      FROM cart_items GROUP BY cart_id, product_id HAVING COUNT(*) > 1) d
+  ON ci.cart_id = d.cart_id AND ci.product_id = d.product_id AND ci.id <> d.keep_id;
+
+ALTER TABLE cart_items ADD CONSTRAINT uk_cart_items_cart_product UNIQUE (cart_id, product_id);
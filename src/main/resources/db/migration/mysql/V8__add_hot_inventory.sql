@@ -0,0 +1,7 @@
+-- Hot products take stock from in-memory counters at checkout; their order lines are
+-- written back to products.stock_quantity later by HotInventory. Existing order lines
+-- have already been taken from stock.
+ALTER TABLE products ADD COLUMN hot BIT NOT NULL DEFAULT 0;
+ALTER TABLE order_items ADD COLUMN stock_applied BIT NOT NULL DEFAULT 1;
+
+CREATE INDEX idx_order_items_stock_applied ON order_items (stock_applied, product_id);
@@ -0,0 +1,7 @@
+-- Tokens issued to a user at or before this second are rejected. Each instance reloads
+-- the cutoffs periodically, so a disable on one node reaches the others. Users already
+-- disabled lose the tokens they hold.
+ALTER TABLE users ADD COLUMN tokens_revoked_before DATETIME(6);
+UPDATE users SET tokens_revoked_before = CURRENT_TIMESTAMP WHERE enabled = 0;
+
+CREATE INDEX idx_users_tokens_revoked_before ON users (tokens_revoked_before);
@@ -0,0 +1,38 @@
+package com.neovarsity.ecommerce.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedPasswordEncoderTest {
+
+    // With two hashing threads there is one slot for bulk work, whichever call takes it,
+    // so a login never waits behind a batch. Were each call given its own slot, the two
+    // calls would hold both threads and a login would queue for most of a batch.
+    @Test
+    void concurrentBulkCallsLeaveAThreadForLogins() {
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(10, 2, 100, 1, new SimpleMeterRegistry())) {
+            String encoded = encoder.encode("password123");
+            List<String> passwords = Collections.nCopies(16, "password123");
+            CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(() -> encoder.encodeAll(passwords));
+            CompletableFuture<List<String>> second = CompletableFuture.supplyAsync(() -> encoder.encodeAll(passwords));
+
+            long slowestLogin = 0;
+            while (!first.isDone() || !second.isDone()) {
+                long started = System.nanoTime();
+                assertThat(encoder.matches("password123", encoded)).isTrue();
+                slowestLogin = Math.max(slowestLogin, System.nanoTime() - started);
+            }
+
+            assertThat(first.orTimeout(1, TimeUnit.MINUTES).join()).hasSize(16);
+            assertThat(second.join()).hasSize(16);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(slowestLogin)).isLessThan(500);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.neovarsity.ecommerce.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovarsity.ecommerce.model.Order;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class FetchPlanQueryCountTest {
+
+    private static final long SMALL_USER = 1;
+    private static final long LARGE_USER = 2;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int i = 1; i <= 40; i++) {
+            jdbcTemplate.update("INSERT INTO products (id, name, price, stock_quantity, category, brand, image_url, active, created_at, updated_at) "
+                    + "VALUES (?, ?, 10, 100, 'Category', 'Brand', 'img', TRUE, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                    i, "Product " + i);
+        }
+        seedUser(SMALL_USER, 2, 1, 2);
+        seedUser(LARGE_USER, 30, 12, 5);
+    }
+
+    @Test
+    void cartReadIsOneStatementRegardlessOfLineCount() {
+        long small = countStatements(() -> cartRepository.findWithItemsByUserId(SMALL_USER).orElseThrow().getItems());
+        long large = countStatements(() -> cartRepository.findWithItemsByUserId(LARGE_USER).orElseThrow().getItems());
+
+        assertThat(small).isEqualTo(1);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void userOrderHistoryIsOneStatementRegardlessOfOrderCount() {
+        long small = countStatements(() -> orderRepository.findWithItemsByUserId(SMALL_USER));
+        long large = countStatements(() -> orderRepository.findWithItemsByUserId(LARGE_USER));
+
+        assertThat(small).isEqualTo(1);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void singleOrderReadIsOneStatement() {
+        Long orderId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM orders WHERE user_id = ?", Long.class, LARGE_USER);
+
+        assertThat(countStatements(() -> orderRepository.findWithItemsById(orderId).orElseThrow())).isEqualTo(1);
+    }
+
+    @Test
+    void adminOrderListingsAreOneStatementAcrossUsers() {
+        assertThat(countStatements(() -> orderRepository.findAllWithItems())).isEqualTo(1);
+        assertThat(countStatements(() -> orderRepository.findWithItemsByStatus(Order.OrderStatus.PENDING)))
+                .isEqualTo(1);
+    }
+
+    private long countStatements(Supplier<Object> read) {
+        entityManager.clear();
+        statistics.clear();
+        try {
+            objectMapper.writeValueAsString(read.get());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void seedUser(long userId, int cartLines, int orders, int itemsPerOrder) {
+        jdbcTemplate.update("INSERT INTO users (id, email, password, first_name, last_name, phone_number, role, enabled, created_at) "
+                + "VALUES (?, ?, 'x', 'First', 'Last', '1', 'CUSTOMER', TRUE, CURRENT_TIMESTAMP)",
+                userId, "user" + userId + "@example.com");
+        jdbcTemplate.update("INSERT INTO carts (id, user_id, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)", userId, userId);
+        for (int i = 1; i <= cartLines; i++) {
+            jdbcTemplate.update("INSERT INTO cart_items (id, cart_id, product_id, quantity, added_at) VALUES (?, ?, ?, 1, CURRENT_TIMESTAMP)",
+                    userId * 1000 + i, userId, i);
+        }
+        for (int o = 1; o <= orders; o++) {
+            long orderId = userId * 1000 + o;
+            jdbcTemplate.update("INSERT INTO orders (id, user_id, total_amount, status, shipping_address, payment_method, created_at) "
+                    + "VALUES (?, ?, 10, 'PENDING', 'Street', 'CARD', CURRENT_TIMESTAMP)", orderId, userId);
+            for (int i = 1; i <= itemsPerOrder; i++) {
+                jdbcTemplate.update("INSERT INTO order_items (id, order_id, product_id, quantity, price) VALUES (?, ?, ?, 1, 10)",
+                        orderId * 100 + i, orderId, o + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.neovarsity.ecommerce.repository;
+
+import com.neovarsity.ecommerce.model.Order;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Each test runs a repository method, captures the SQL Hibernate sends for it and has
+// H2 explain that exact statement. Parameters are left unbound: the planner picks an
+// index from the shape of the conditions, not from their values.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.neovarsity.ecommerce.repository.QueryIndexUsageTest$CapturedSql")
+class QueryIndexUsageTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void seedAndAnalyze() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Integer.class) > 0) {
+            return;
+        }
+        for (int i = 1; i <= 500; i++) {
+            jdbcTemplate.update("INSERT INTO products (id, name, price, stock_quantity, category, brand, image_url, active, created_at, updated_at) "
+                    + "VALUES (?, ?, 10, 5, ?, ?, 'img', ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                    i, "Product " + i, "Category " + (i % 25), "Brand " + (i % 40), i % 10 != 0);
+        }
+        for (int i = 1; i <= 50; i++) {
+            jdbcTemplate.update("INSERT INTO users (id, email, password, first_name, last_name, phone_number, role, enabled, created_at) "
+                    + "VALUES (?, ?, 'x', 'First', 'Last', '1', 'CUSTOMER', TRUE, CURRENT_TIMESTAMP)",
+                    i, "user" + i + "@example.com");
+            jdbcTemplate.update("INSERT INTO carts (id, user_id, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)", i, i);
+        }
+        String[] statuses = {"PENDING", "CONFIRMED", "SHIPPED", "DELIVERED", "CANCELLED"};
+        for (int i = 1; i <= 500; i++) {
+            jdbcTemplate.update("INSERT INTO orders (id, user_id, total_amount, status, shipping_address, payment_method, created_at) "
+                    + "VALUES (?, ?, 10, ?, 'Street', 'CARD', DATEADD('MINUTE', ?, TIMESTAMP '2024-01-01 00:00:00'))",
+                    i, i % 50 + 1, statuses[i % statuses.length], (i * 37) % 500);
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void productListingUsesActiveIdIndex() {
+        assertUsesIndex(() -> productRepository.findByActiveTrueAndIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 21)),
+                "IDX_PRODUCTS_ACTIVE_ID");
+        assertUsesIndex(() -> productRepository.findByActiveTrue(), "IDX_PRODUCTS_ACTIVE_ID");
+    }
+
+    @Test
+    void categoryListingUsesCategoryActiveIdIndex() {
+        assertUsesIndex(() -> productRepository.findByCategoryAndActiveTrueAndIdGreaterThanOrderByIdAsc(
+                "Category 3", 0L, PageRequest.of(0, 21)), "IDX_PRODUCTS_CATEGORY_ACTIVE_ID");
+        assertUsesIndex(() -> productRepository.findByCategory("Category 3"), "IDX_PRODUCTS_CATEGORY_ACTIVE_ID");
+    }
+
+    @Test
+    void brandLookupUsesBrandIndex() {
+        assertUsesIndex(() -> productRepository.findByBrand("Brand 7"), "IDX_PRODUCTS_BRAND");
+    }
+
+    @Test
+    void catalogLastModifiedUsesUpdatedAtIndex() {
+        assertUsesIndex(() -> productRepository.findLatestUpdatedAt(), "IDX_PRODUCTS_UPDATED_AT");
+    }
+
+    @Test
+    void productLookupsUsePrimaryKey() {
+        assertUsesIndex(() -> productRepository.findUpdatedAtById(1L), "PRIMARY_KEY");
+    }
+
+    // H2 backs fk_orders_user with its own single-column index and may prefer it; MySQL
+    // drops that implicit index once V3 adds one leading with user_id, so there order
+    // history can only use the composite. Either way the composite has to exist.
+    @Test
+    void orderHistoryUsesAUserIndex() {
+        assertUsesIndex(() -> orderRepository.findWithItemsByUserId(1L), "IDX_ORDERS_USER_CREATED", "FK_ORDERS_USER");
+        assertThat(jdbcTemplate.queryForList("SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.INDEX_COLUMNS "
+                + "WHERE TABLE_NAME = 'ORDERS' AND INDEX_NAME = 'IDX_ORDERS_USER_CREATED' ORDER BY ORDINAL_POSITION",
+                String.class)).containsExactly("USER_ID", "CREATED_AT");
+    }
+
+    @Test
+    void adminStatusListingUsesStatusCreatedIndex() {
+        assertUsesIndex(() -> orderRepository.findWithItemsByStatus(Order.OrderStatus.PENDING),
+                "IDX_ORDERS_STATUS_CREATED");
+    }
+
+    @Test
+    void orderListingsAreNewestFirst() {
+        assertNewestFirst(orderRepository.findWithItemsByUserId(1L));
+        assertNewestFirst(orderRepository.findWithItemsByStatus(Order.OrderStatus.SHIPPED));
+    }
+
+    @Test
+    void staleCartLineSweepUsesAddedAtIndex() {
+        assertUsesIndex(() -> cartItemRepository.findStaleLines(LocalDateTime.now(),
+                LocalDateTime.of(1970, 1, 1, 0, 0), 0L, PageRequest.of(0, 500)), "IDX_CART_ITEMS_ADDED_AT");
+    }
+
+    @Test
+    void cartAndUserLookupsUseUniqueIndexes() {
+        assertUsesIndex(() -> cartRepository.findIdByUserId(1L), "UK_CARTS_USER");
+        assertUsesIndex(() -> userRepository.findByEmail("user1@example.com"), "UK_USERS_EMAIL");
+    }
+
+    @Test
+    void tokenCutoffReloadUsesCutoffIndex() {
+        assertUsesIndex(() -> userRepository.findTokenCutoffsAfter(LocalDateTime.now()),
+                "IDX_USERS_TOKENS_REVOKED_BEFORE");
+    }
+
+    private void assertNewestFirst(List<Order> orders) {
+        assertThat(orders).hasSizeGreaterThan(1);
+        for (int i = 1; i < orders.size(); i++) {
+            assertThat(orders.get(i).getCreatedAt()).isBeforeOrEqualTo(orders.get(i - 1).getCreatedAt());
+        }
+    }
+
+    // Only the method's own query is explained; loading an eager association afterwards
+    // issues further statements. H2 names indexes it creates for constraints after the
+    // constraint plus a suffix, e.g. PRIMARY_KEY_8 or UK_CARTS_USER_INDEX_4. Any one of
+    // the given indexes is accepted.
+    private void assertUsesIndex(Runnable repositoryCall, String... indexes) {
+        CapturedSql.STATEMENTS.clear();
+        repositoryCall.run();
+        assertThat(CapturedSql.STATEMENTS).as("statements issued").isNotEmpty();
+
+        String sql = CapturedSql.STATEMENTS.get(0);
+        String plan = jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                 ResultSet result = statement.executeQuery()) {
+                result.next();
+                return result.getString(1);
+            }
+        });
+        assertThat(plan).as(plan).doesNotContainIgnoringCase("tableScan");
+        assertThat(plan.toUpperCase()).as("expected one of %s in plan:%n%s", List.of(indexes), plan)
+                .containsPattern("\\.(" + String.join("|", indexes) + ")(_INDEX)?(_[0-9A-F]+)?\\b");
+    }
+
+    public static class CapturedSql implements StatementInspector {
+
+        static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
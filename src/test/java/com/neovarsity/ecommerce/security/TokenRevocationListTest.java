@@ -0,0 +1,83 @@
+package com.neovarsity.ecommerce.security;
+
+import com.neovarsity.ecommerce.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The revoking transaction is played by hand: its synchronizations are opened before
+// revoke() and only run afterCommit once the test decides the row has committed. Until
+// then the repository's reads do not see the row, as another transaction would not.
+class TokenRevocationListTest {
+
+    private TokenRevocationList revocationList;
+    private RevokedTokenRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RevokedTokenRepository.class);
+        revocationList = new TokenRevocationList();
+        ReflectionTestUtils.setField(revocationList, "revokedTokenRepository", repository);
+        ReflectionTestUtils.setField(revocationList, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(revocationList, "expectedEntries", 1000L);
+        ReflectionTestUtils.setField(revocationList, "falsePositiveRate", 0.01);
+        revocationList.init();
+        when(repository.findUnexpiredJtis(any(LocalDateTime.class))).thenReturn(List.of());
+        revocationList.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void revokeCommittedAfterARefreshReadIsStillCaught() {
+        TransactionSynchronizationManager.initSynchronization();
+        revocationList.revoke("late", 1L, new Date());
+
+        revocationList.refresh();
+        commit();
+
+        when(repository.existsById(anyString())).thenReturn(true);
+        assertThat(revocationList.isRevoked("late")).isTrue();
+    }
+
+    @Test
+    void revokeDuringARefreshReadIsStillCaught() {
+        when(repository.findUnexpiredJtis(any(LocalDateTime.class))).thenAnswer(invocation -> {
+            TransactionSynchronizationManager.initSynchronization();
+            revocationList.revoke("concurrent", 1L, new Date());
+            return List.of("earlier");
+        });
+
+        revocationList.refresh();
+        commit();
+
+        when(repository.existsById(anyString())).thenReturn(true);
+        assertThat(revocationList.isRevoked("concurrent")).isTrue();
+        assertThat(revocationList.isRevoked("earlier")).isTrue();
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+}
@@ -0,0 +1,66 @@
+package com.neovarsity.ecommerce.security;
+
+import com.neovarsity.ecommerce.dto.UserTokenCutoff;
+import com.neovarsity.ecommerce.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserRevocationRegistryTest {
+
+    private UserRevocationRegistry registry;
+    private UserRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(UserRepository.class);
+        registry = new UserRevocationRegistry();
+        ReflectionTestUtils.setField(registry, "userRepository", repository);
+        ReflectionTestUtils.setField(registry, "jwtExpiration", 86_400_000L);
+    }
+
+    @Test
+    void tokenIssuedInTheSecondOfTheDisableIsRevoked() {
+        Instant second = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        registry.revokeTokensIssuedUntil(1L, second.plusMillis(900));
+
+        assertThat(registry.isRevoked(1L, Date.from(second))).isTrue();
+        assertThat(registry.isRevoked(1L, Date.from(second.plusSeconds(1)))).isFalse();
+    }
+
+    @Test
+    void disableOnAnotherInstanceIsPickedUpOnRefresh() {
+        Instant second = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        when(repository.findTokenCutoffsAfter(any(LocalDateTime.class))).thenReturn(
+                List.of(new UserTokenCutoff(2L, LocalDateTime.ofInstant(second, ZoneId.systemDefault()))));
+        assertThat(registry.isRevoked(2L, Date.from(second))).isFalse();
+
+        registry.refresh();
+
+        assertThat(registry.isRevoked(2L, Date.from(second))).isTrue();
+    }
+
+    @Test
+    void cutoffOlderThanTheTokenLifetimeIsDropped() {
+        Instant expired = Instant.now().minus(2, ChronoUnit.DAYS);
+        registry.revokeTokensIssuedUntil(3L, expired);
+        when(repository.findTokenCutoffsAfter(any(LocalDateTime.class))).thenReturn(List.of());
+
+        registry.refresh();
+
+        assertThat(registry.isRevoked(3L, Date.from(expired))).isFalse();
+    }
+}
@@ -0,0 +1,82 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.CartItemRequest;
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.security.UserPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Adds race each other both on one cart, where they must fold into a single line, and
+// across many new carts, where every first add inserts a line next to its neighbours'.
+@SpringBootTest
+@ActiveProfiles("dev")
+@Import(CheckoutFixture.class)
+class CartUpsertConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ADDS = 200;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CheckoutFixture fixture;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentAddsOfOneProductFoldIntoOneLine() throws Exception {
+        Product product = fixture.saveProduct("Headset", "12.50", ADDS);
+        UserPrincipal buyer = fixture.saveBuyer();
+        List<UserPrincipal> adds = new ArrayList<>();
+        for (int i = 0; i < ADDS; i++) {
+            adds.add(buyer);
+        }
+
+        fixture.runConcurrently(adds, THREADS, user -> addToCart(product));
+
+        Map<String, Object> line = jdbcTemplate.queryForMap("SELECT COUNT(*) AS lines, SUM(ci.quantity) AS quantity "
+                + "FROM cart_items ci JOIN carts c ON c.id = ci.cart_id WHERE c.user_id = ?", buyer.getId());
+        assertThat(((Number) line.get("LINES")).intValue()).isEqualTo(1);
+        assertThat(((Number) line.get("QUANTITY")).intValue()).isEqualTo(ADDS);
+        assertTotals(buyer, new BigDecimal("12.50").multiply(BigDecimal.valueOf(ADDS)), 1);
+    }
+
+    @Test
+    void concurrentFirstAddsToNewCartsEachInsertOneLine() throws Exception {
+        Product product = fixture.saveProduct("Webcam", "30.00", ADDS);
+        List<UserPrincipal> buyers = new ArrayList<>();
+        for (int i = 0; i < ADDS; i++) {
+            buyers.add(fixture.saveBuyer());
+        }
+
+        fixture.runConcurrently(buyers, THREADS, user -> addToCart(product));
+
+        for (UserPrincipal buyer : buyers) {
+            assertTotals(buyer, new BigDecimal("30.00"), 1);
+        }
+    }
+
+    private void addToCart(Product product) {
+        cartService.addToCart(new CartItemRequest(product.getId(), 1));
+    }
+
+    private void assertTotals(UserPrincipal buyer, BigDecimal subtotal, int itemCount) {
+        Map<String, Object> cart = jdbcTemplate.queryForMap(
+                "SELECT subtotal, item_count FROM carts WHERE user_id = ?", buyer.getId());
+        assertThat((BigDecimal) cart.get("SUBTOTAL")).isEqualByComparingTo(subtotal);
+        assertThat(((Number) cart.get("ITEM_COUNT")).intValue()).isEqualTo(itemCount);
+    }
+}
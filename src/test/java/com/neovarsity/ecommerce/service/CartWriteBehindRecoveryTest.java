@@ -0,0 +1,174 @@
+package com.neovarsity.ecommerce.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+// The scheduled flush is pushed out of the way so each test decides when a flush
+// interval ends. Whatever is in the database at any point is what a restart after a
+// crash would recover, since the buffer itself is not persisted.
+@SpringBootTest(properties = {"cart.store.mode=write-behind", "cart.store.flush-interval=PT1H"})
+@ActiveProfiles("dev")
+@Import(CheckoutFixture.class)
+class CartWriteBehindRecoveryTest {
+
+    @Autowired
+    private CartWriteBehindStore cartStore;
+
+    @Autowired
+    private CheckoutFixture fixture;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long userId;
+    private Long keyboard;
+    private Long mouse;
+
+    @BeforeEach
+    void seed() {
+        userId = fixture.saveBuyer().getId();
+        keyboard = fixture.saveProduct("Keyboard", "25.00", 100).getId();
+        mouse = fixture.saveProduct("Mouse", "10.00", 100).getId();
+    }
+
+    @Test
+    void crashLosesOnlyChangesSinceTheLastFlush() {
+        add(keyboard, 2);
+        add(mouse, 1);
+        cartStore.flushAll();
+
+        add(keyboard, 3);
+        cartStore.apply(userId, current -> Map.of(keyboard, current.get(keyboard)));
+
+        assertThat(persistedLines()).containsOnly(entry(keyboard, 2), entry(mouse, 1));
+        assertPersistedTotals("60.00", 2);
+
+        cartStore.flushAll();
+
+        assertThat(persistedLines()).containsOnly(entry(keyboard, 5));
+        assertPersistedTotals("125.00", 1);
+    }
+
+    @Test
+    void nothingIsWrittenUntilTheIntervalEnds() {
+        add(keyboard, 1);
+        add(keyboard, 1);
+        add(mouse, 4);
+
+        assertThat(persistedLines()).isEmpty();
+
+        cartStore.flushAll();
+
+        assertThat(persistedLines()).containsOnly(entry(keyboard, 2), entry(mouse, 4));
+        assertPersistedTotals("90.00", 2);
+    }
+
+    @Test
+    void writeThroughFlushesPendingChangesFirst() {
+        add(mouse, 3);
+
+        Map<Long, Integer> seen = cartStore.writeThrough(userId, this::persistedLines);
+
+        assertThat(seen).containsOnly(entry(mouse, 3));
+        assertPersistedTotals("30.00", 1);
+    }
+
+    @Test
+    void readsArePassedTheBufferWithoutFlushing() {
+        add(mouse, 3);
+
+        Map<Long, Integer> seen = cartStore.read(userId, Map::copyOf, this::persistedLines);
+
+        assertThat(seen).containsOnly(entry(mouse, 3));
+        assertThat(persistedLines()).isEmpty();
+    }
+
+    // The cart row is held by another transaction so the flush stalls in its write. A
+    // change made meanwhile must not wait for it, and is written by the next flush.
+    @Test
+    void changesCarryOnWhileAFlushIsWriting() throws Exception {
+        add(keyboard, 1);
+        cartStore.flushAll();
+        add(keyboard, 1);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> holder = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM carts WHERE user_id = ? FOR UPDATE", userId);
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            locked.await();
+            Future<?> flush = executor.submit(cartStore::flushAll);
+            Thread.sleep(100);
+
+            CompletableFuture.runAsync(() -> add(mouse, 1)).get(500, TimeUnit.MILLISECONDS);
+
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+            flush.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        cartStore.flushAll();
+
+        assertThat(persistedLines()).containsOnly(entry(keyboard, 2), entry(mouse, 1));
+        assertPersistedTotals("60.00", 2);
+    }
+
+    private void add(Long productId, int quantity) {
+        cartStore.apply(userId, current -> {
+            Map<Long, Integer> next = new HashMap<>(current);
+            next.merge(productId, quantity, Integer::sum);
+            return next;
+        });
+    }
+
+    private Map<Long, Integer> persistedLines() {
+        Map<Long, Integer> lines = new HashMap<>();
+        jdbcTemplate.query("SELECT ci.product_id, ci.quantity FROM cart_items ci JOIN carts c ON c.id = ci.cart_id "
+                        + "WHERE c.user_id = ?",
+                rs -> {
+                    lines.put(rs.getLong(1), rs.getInt(2));
+                }, userId);
+        return lines;
+    }
+
+    private void assertPersistedTotals(String subtotal, int itemCount) {
+        Map<String, Object> cart = jdbcTemplate.queryForMap(
+                "SELECT subtotal, item_count FROM carts WHERE user_id = ?", userId);
+        assertThat((BigDecimal) cart.get("subtotal")).isEqualByComparingTo(subtotal);
+        assertThat(((Number) cart.get("item_count")).intValue()).isEqualTo(itemCount);
+    }
+}
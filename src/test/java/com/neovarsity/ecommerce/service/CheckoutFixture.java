@@ -0,0 +1,175 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.OrderRequest;
+import com.neovarsity.ecommerce.model.Cart;
+import com.neovarsity.ecommerce.model.CartItem;
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.model.User;
+import com.neovarsity.ecommerce.repository.CartRepository;
+import com.neovarsity.ecommerce.repository.ProductRepository;
+import com.neovarsity.ecommerce.repository.UserRepository;
+import com.neovarsity.ecommerce.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Products, buyers and the thread harness shared by the checkout and cart tests.
+// Import it into the test's context with @Import(CheckoutFixture.class).
+@TestComponent
+public class CheckoutFixture {
+
+    public static final String PLACED = "placed";
+
+    private static final Logger log = LoggerFactory.getLogger(CheckoutFixture.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public Product saveProduct(String name, String price, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(stock);
+        product.setCategory("Electronics");
+        product.setBrand("Brand");
+        product.setImageUrl("img");
+        return productRepository.save(product);
+    }
+
+    public UserPrincipal saveBuyer() {
+        return UserPrincipal.from(saveUser());
+    }
+
+    // One unit of each product, with the cart totals to match
+    public UserPrincipal saveBuyerWithCart(Product... products) {
+        User user = saveUser();
+        Cart cart = new Cart();
+        cart.setUser(user);
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (Product product : products) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product);
+            item.setQuantity(1);
+            cart.getItems().add(item);
+            subtotal = subtotal.add(product.getPrice());
+        }
+        cart.setSubtotal(subtotal);
+        cart.setItemCount(products.length);
+        cartRepository.save(cart);
+        return UserPrincipal.from(user);
+    }
+
+    // Returns PLACED, or the message the order was rejected with
+    public String checkOut(UserPrincipal buyer) {
+        String[] outcome = new String[1];
+        runAs(buyer, () -> {
+            try {
+                orderService.createOrder(new OrderRequest("1 Main St", "CARD"));
+                outcome[0] = PLACED;
+            } catch (RuntimeException e) {
+                outcome[0] = e.getMessage();
+            }
+        });
+        return outcome[0];
+    }
+
+    // Counts of each outcome of checking out every buyer concurrently. Each checkout is
+    // timed by the checkout.concurrent timer and the run's throughput is logged.
+    public Map<String, Integer> checkOutConcurrently(List<UserPrincipal> buyers, int threads) throws Exception {
+        Timer latency = Timer.builder("checkout.concurrent")
+                .description("Time taken by each checkout of a concurrent test run")
+                .register(meterRegistry);
+        Map<String, Integer> outcomes = new ConcurrentHashMap<>();
+        long started = System.nanoTime();
+        runConcurrently(buyers, threads, buyer -> outcomes.merge(latency.record(() -> checkOut(buyer)), 1, Integer::sum));
+        long elapsed = System.nanoTime() - started;
+        log.info("{} checkouts on {} threads in {} ms ({} checkouts/s): {}", buyers.size(), threads,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), Math.round(buyers.size() / (elapsed / 1e9)), outcomes);
+        return outcomes;
+    }
+
+    // Runs the work once per user, signed in as that user, on a pool of threads that are
+    // all released together. Fails if any run throws.
+    public void runConcurrently(List<UserPrincipal> users, int threads, Consumer<UserPrincipal> work)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (UserPrincipal user : users) {
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    runAs(user, () -> work.accept(user));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> run : runs) {
+                run.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public int stockOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM products WHERE id = ?", Integer.class,
+                product.getId());
+    }
+
+    private User saveUser() {
+        User user = new User();
+        user.setEmail("buyer-" + UUID.randomUUID() + "@example.com");
+        user.setPassword("x");
+        user.setFirstName("First");
+        user.setLastName("Last");
+        user.setPhoneNumber("1");
+        return userRepository.save(user);
+    }
+
+    private static void runAs(UserPrincipal user, Runnable work) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        try {
+            work.run();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.security.UserPrincipal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+// Every cart holds one plentiful product and one unit of a product that runs out. The
+// plentiful product has the lower id, so it is decremented first and a checkout that
+// then finds the limited product sold out has to roll that decrement back.
+@SpringBootTest
+@ActiveProfiles("dev")
+@Import(CheckoutFixture.class)
+class ConcurrentCheckoutTest {
+
+    private static final int CHECKOUTS = 200;
+    private static final int THREADS = 16;
+    private static final int LIMITED_STOCK = 50;
+    private static final int PLENTIFUL_STOCK = 1000;
+
+    @Autowired
+    private CheckoutFixture fixture;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        Product plentiful = fixture.saveProduct("Cable", "10.00", PLENTIFUL_STOCK);
+        Product limited = fixture.saveProduct("Flash Sale Phone", "10.00", LIMITED_STOCK);
+        List<UserPrincipal> buyers = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            buyers.add(fixture.saveBuyerWithCart(plentiful, limited));
+        }
+
+        long timedBefore = checkoutsTimed();
+        Map<String, Integer> outcomes = fixture.checkOutConcurrently(buyers, THREADS);
+
+        assertThat(outcomes).containsOnly(entry(CheckoutFixture.PLACED, LIMITED_STOCK),
+                entry("Insufficient stock for product: Flash Sale Phone", CHECKOUTS - LIMITED_STOCK));
+        assertThat(fixture.stockOf(limited)).isZero();
+        assertThat(fixture.stockOf(plentiful)).isEqualTo(PLENTIFUL_STOCK - LIMITED_STOCK);
+        assertThat(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM order_items WHERE product_id = ?",
+                Integer.class, limited.getId())).isEqualTo(LIMITED_STOCK);
+        assertThat(checkoutsTimed() - timedBefore).isEqualTo(CHECKOUTS);
+    }
+
+    private long checkoutsTimed() {
+        Timer timer = meterRegistry.find("checkout.concurrent").timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,184 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.ProductRequest;
+import com.neovarsity.ecommerce.dto.ProductResponse;
+import com.neovarsity.ecommerce.model.Product;
+import com.neovarsity.ecommerce.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+// The scheduled reconciliation is pushed out of the way so each test decides when the
+// reserved stock is written back. Other test contexts share the database and may run
+// their own reconciliation, so the database side is checked as stock plus the
+// quantities still waiting to be applied.
+@SpringBootTest(properties = "product.hot.reconcile-interval=PT1H")
+@ActiveProfiles("dev")
+@Import(CheckoutFixture.class)
+class HotInventoryTest {
+
+    private static final int CHECKOUTS = 200;
+    private static final int THREADS = 16;
+    private static final int HOT_STOCK = 50;
+
+    @Autowired
+    private CheckoutFixture fixture;
+
+    @Autowired
+    private HotInventory hotInventory;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> hotProducts = new ArrayList<>();
+
+    // The counters live in the cached application context, so nothing is left marked hot
+    // for later tests
+    @AfterEach
+    void unmarkHotProducts() {
+        hotProducts.stream()
+                .filter(id -> hotInventory.available(id) != null)
+                .forEach(hotInventory::unmarkHot);
+    }
+
+    @Test
+    void concurrentCheckoutsOfAHotProductNeverOversell() throws Exception {
+        Product plentiful = fixture.saveProduct("Charger", "10.00", 1000);
+        Product hot = fixture.saveProduct("Limited Console", "10.00", HOT_STOCK);
+        markHot(hot);
+        List<UserPrincipal> buyers = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            buyers.add(fixture.saveBuyerWithCart(plentiful, hot));
+        }
+
+        Map<String, Integer> outcomes = fixture.checkOutConcurrently(buyers, THREADS);
+
+        assertThat(outcomes).containsOnly(entry(CheckoutFixture.PLACED, HOT_STOCK),
+                entry("Insufficient stock for product: Limited Console", CHECKOUTS - HOT_STOCK));
+        assertThat(hotInventory.available(hot.getId())).isZero();
+        assertThat(fixture.stockOf(hot) - unappliedOf(hot)).isZero();
+        assertThat(fixture.stockOf(plentiful)).isEqualTo(1000 - HOT_STOCK);
+
+        hotInventory.reconcile();
+
+        assertThat(fixture.stockOf(hot)).isZero();
+        assertThat(unappliedOf(hot)).isZero();
+    }
+
+    // The restart happens while a checkout holds a reservation whose order never commits.
+    // The restarted counters must count the committed orders and not the lost reservation.
+    @Test
+    void restartRebuildsCountersFromCommittedOrders() {
+        Product hot = fixture.saveProduct("Limited Headphones", "10.00", 10);
+        markHot(hot);
+        for (int i = 0; i < 3; i++) {
+            assertThat(fixture.checkOut(fixture.saveBuyerWithCart(hot))).isEqualTo(CheckoutFixture.PLACED);
+        }
+
+        HotInventory[] restarted = new HotInventory[1];
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(hotInventory.reserve(hot.getId(), 2)).isEqualTo(HotInventory.Reservation.RESERVED);
+            assertThat(hotInventory.available(hot.getId())).isEqualTo(5);
+            restarted[0] = CompletableFuture.supplyAsync(this::restart).orTimeout(30, TimeUnit.SECONDS).join();
+            status.setRollbackOnly();
+        });
+
+        assertThat(restarted[0].available(hot.getId())).isEqualTo(7);
+        assertThat(fixture.stockOf(hot)).isEqualTo(7);
+        assertThat(unappliedOf(hot)).isZero();
+    }
+
+    @Test
+    void unmarkingWritesReservedStockBack() {
+        Product hot = fixture.saveProduct("Limited Watch", "10.00", 5);
+        markHot(hot);
+        fixture.checkOut(fixture.saveBuyerWithCart(hot));
+
+        hotInventory.unmarkHot(hot.getId());
+
+        assertThat(hotInventory.available(hot.getId())).isNull();
+        assertThat(fixture.stockOf(hot)).isEqualTo(4);
+        assertThat(unappliedOf(hot)).isZero();
+    }
+
+    @Test
+    void editingAHotProductMustKeepItsLiveStock() {
+        Product hot = fixture.saveProduct("Limited Camera", "10.00", 5);
+        markHot(hot);
+        fixture.checkOut(fixture.saveBuyerWithCart(hot));
+
+        ProductResponse response = productService.updateProduct(hot.getId(), cameraRequest("Limited Camera II", 4));
+
+        assertThat(response.getName()).isEqualTo("Limited Camera II");
+        assertThat(response.getStockQuantity()).isEqualTo(4);
+        assertThatThrownBy(() -> productService.updateProduct(hot.getId(), cameraRequest("Limited Camera III", 20)))
+                .hasMessage("Stock of a hot product cannot be changed, unmark the product first");
+        assertThat(hotInventory.available(hot.getId())).isEqualTo(4);
+    }
+
+    @Test
+    void cachedReadsAndValidatorsFollowLiveStock() {
+        Product hot = fixture.saveProduct("Limited Drone", "10.00", 5);
+        markHot(hot);
+        assertThat(productService.getProductById(hot.getId()).getStockQuantity()).isEqualTo(5);
+        String productVersion = productService.getProductStockVersion(hot.getId()).orElseThrow();
+        String catalogVersion = productService.getCatalogStockVersion().orElseThrow();
+
+        fixture.checkOut(fixture.saveBuyerWithCart(hot));
+
+        assertThat(productService.getProductById(hot.getId()).getStockQuantity()).isEqualTo(4);
+        assertThat(productService.getProductStockVersion(hot.getId())).isNotEqualTo(Optional.of(productVersion));
+        assertThat(productService.getCatalogStockVersion()).isNotEqualTo(Optional.of(catalogVersion));
+    }
+
+    private static ProductRequest cameraRequest(String name, int stock) {
+        return new ProductRequest(name, name, new BigDecimal("10.00"), stock, "Electronics", "Brand", "img");
+    }
+
+    private void markHot(Product product) {
+        hotInventory.markHot(product.getId());
+        hotProducts.add(product.getId());
+    }
+
+    // A fresh instance stands in for the restarted process: it starts with no counters
+    // and knows only what the database has committed.
+    private HotInventory restart() {
+        HotInventory restarted = new HotInventory();
+        beanFactory.autowireBean(restarted);
+        restarted.init();
+        return restarted;
+    }
+
+    private int unappliedOf(Product product) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM order_items "
+                + "WHERE product_id = ? AND stock_applied = FALSE", Integer.class, product.getId());
+    }
+}
@@ -0,0 +1,132 @@
+package com.neovarsity.ecommerce.service;
+
+import com.neovarsity.ecommerce.dto.ProductSuggestion;
+import com.neovarsity.ecommerce.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductSuggestIndexTest {
+
+    private ProductSuggestIndex index;
+    private long nextId;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSuggestIndex();
+        ReflectionTestUtils.setField(index, "bucketLength", 3);
+    }
+
+    @Test
+    void shortPrefixReturnsMostPopularCompletionsNotAlphabeticallyEarlyOnes() {
+        for (int i = 0; i < 6000; i++) {
+            add(String.format("Pad %04d", i), 0);
+        }
+        Long popular = add("Pz Phone", 10);
+        Long runnerUp = add("Pv Pen", 3);
+        index.refresh();
+
+        assertThat(index.suggest("p", 2)).extracting(ProductSuggestion::getProductId)
+                .containsExactly(popular, runnerUp);
+        assertThat(index.suggest("pz ph", 5)).extracting(ProductSuggestion::getProductId)
+                .containsExactly(popular);
+    }
+
+    @Test
+    void sharedNameIsSuggestedForItsMostPopularProduct() {
+        add("Phone X", 1);
+        Long popular = add("Phone X", 5);
+        index.refresh();
+
+        List<ProductSuggestion> suggestions = index.suggest("phone", 10);
+
+        assertThat(suggestions).extracting(ProductSuggestion::getProductId).containsExactly(popular);
+    }
+
+    @Test
+    void rankingUsesThePopularitySnapshotTakenAtRefresh() {
+        Long first = add("Tab One", 2);
+        Long second = add("Tab Two", 1);
+        index.refresh();
+        for (int i = 0; i < 5; i++) {
+            index.recordView(second);
+        }
+
+        assertThat(index.suggest("tab", 2)).extracting(ProductSuggestion::getProductId)
+                .containsExactly(first, second);
+
+        index.refresh();
+
+        assertThat(index.suggest("tab", 2)).extracting(ProductSuggestion::getProductId)
+                .containsExactly(second, first);
+    }
+
+    @Test
+    void removedProductIsNotSuggestedBeforeTheNextRefresh() {
+        Long removed = add("Lamp", 1);
+        index.refresh();
+
+        index.remove(removed);
+
+        assertThat(index.suggest("lamp", 10)).isEmpty();
+    }
+
+    @Test
+    void newProductIsSuggestedBeforeTheNextRefresh() {
+        add("Kettle", 3);
+        index.refresh();
+
+        Long added = add("Keyboard", 0);
+
+        assertThat(index.suggest("key", 10)).extracting(ProductSuggestion::getProductId).containsExactly(added);
+        assertThat(index.suggest("ke", 10)).extracting(ProductSuggestion::getText)
+                .containsExactly("Kettle", "Keyboard");
+    }
+
+    @Test
+    void renamedProductIsSuggestedUnderItsNewNameBeforeTheNextRefresh() {
+        Long renamed = add("Mouse", 2);
+        index.refresh();
+
+        rename(renamed, "Trackball");
+
+        assertThat(index.suggest("mou", 10)).isEmpty();
+        assertThat(index.suggest("track", 10)).extracting(ProductSuggestion::getProductId).containsExactly(renamed);
+    }
+
+    @Test
+    void sharedNameOutlivesItsMostPopularProduct() {
+        Long remaining = add("Phone X", 1);
+        Long popular = add("Phone X", 5);
+        index.refresh();
+
+        index.remove(popular);
+
+        assertThat(index.suggest("phone", 10)).extracting(ProductSuggestion::getProductId)
+                .containsExactly(remaining);
+    }
+
+    private void rename(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setBrand("Acme");
+        index.index(product);
+    }
+
+    private Long add(String name, int views) {
+        Product product = new Product();
+        product.setId(++nextId);
+        product.setName(name);
+        product.setBrand("Acme");
+        index.index(product);
+        for (int i = 0; i < views; i++) {
+            index.recordView(product.getId());
+        }
+        return product.getId();
+    }
+}